@@ -0,0 +1,238 @@
+package vizualizator3d.main;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Gradient-adaptive sampling of a function over the lattice of a FunctionGrid;
+ * A quadtree is built over the grid's window: a cell is subdivided if the function deviates from the bilinear
+ * interpolation of the cell's corners (curvature) or the corners differ too much (value delta);
+ * Every cell is subdivided down to MINIMUM_DEPTH regardless of its error, so that features missed by the few test points
+ * of large cells (e.g. a function vanishing on both axes) are still found;
+ * Then the cell with the largest error is always subdivided first, until no cell exceeds the tolerances
+ * or the budget of evaluated samples is used up;
+ * Samples that were not evaluated get values interpolated bilinearly from the corners of their leaf cell,
+ * so the result still covers the whole grid, but only the evaluated samples need to be displayed
+ * @author Katarína Osvaldová
+ */
+public class AdaptiveSampler {
+    /**
+     * Depth of the quadtree up to which all cells are subdivided (4 gives a 17 x 17 base lattice)
+     */
+    static final int MINIMUM_DEPTH = 4;
+    private final double curvatureTolerance;
+    private final double deltaTolerance;
+    private final int pointBudget;
+
+    /**
+     * Result of the sampling
+     */
+    public static class Samples {
+        private final int[] evaluated;
+        private final double minValue;
+        private final double maxValue;
+
+        private Samples(int[] evaluated, double minValue, double maxValue) {
+            this.evaluated = evaluated;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+
+        /**
+         * @return indices of the evaluated samples of the grid, in increasing order
+         */
+        public int[] getEvaluated() {
+            return evaluated;
+        }
+
+        public double getMinValue() {
+            return minValue;
+        }
+
+        public double getMaxValue() {
+            return maxValue;
+        }
+    }
+
+    /**
+     * Cell of the quadtree given by its corner samples [column0, column1] x [row0, row1]
+     */
+    private static class Cell {
+        final int column0, row0, column1, row1;
+        final int depth;
+        double error;
+
+        Cell(int column0, int row0, int column1, int row1, int depth) {
+            this.column0 = column0;
+            this.row0 = row0;
+            this.column1 = column1;
+            this.row1 = row1;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * @param curvatureTolerance maximal allowed difference between the function and the bilinear interpolation of a cell
+     * @param deltaTolerance maximal allowed difference between the values at the corners of a cell
+     * @param pointBudget maximal number of evaluated samples
+     */
+    public AdaptiveSampler(double curvatureTolerance, double deltaTolerance, int pointBudget) {
+        this.curvatureTolerance = curvatureTolerance;
+        this.deltaTolerance = deltaTolerance;
+        this.pointBudget = pointBudget;
+    }
+
+    /**
+     * Samples the function over the grid
+     * @param grid grid providing the lattice of samples
+     * @param function function to evaluate
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     * @param values array receiving the values of all samples, indexed as the samples of the grid
+     * @param cancelled checked regularly, the sampling stops early (with an incomplete result) once it returns true
+     * @return evaluated samples and min/max of the values
+     */
+    public Samples sample(FunctionGrid grid, DoubleBinaryOperator function, double xOffset, double yOffset,
+                          double zoom, double[] values, BooleanSupplier cancelled) {
+        int columns = grid.getColumns();
+        boolean[] known = new boolean[grid.size()];
+        int[] evaluatedCount = {0};
+        Evaluation evaluate = (column, row) -> {
+            int index = row * columns + column;
+            if (!known[index]) {
+                known[index] = true;
+                values[index] = function.applyAsDouble(grid.getX(column) - xOffset, grid.getY(row) - yOffset) * zoom;
+                evaluatedCount[0]++;
+            }
+            return values[index];
+        };
+
+        PriorityQueue<Cell> queue = new PriorityQueue<>((a, b) -> Double.compare(b.error, a.error));
+        Cell root = new Cell(0, 0, columns - 1, grid.getRows() - 1, 0);
+        measure(root, evaluate);
+        queue.add(root);
+        Cell[] leaves = new Cell[16];
+        int leafCount = 0;
+        while (!queue.isEmpty()) {
+            if (cancelled.getAsBoolean()) {
+                break;
+            }
+            Cell cell = queue.poll();
+            boolean divisible = cell.column1 - cell.column0 >= 2 || cell.row1 - cell.row0 >= 2;
+            boolean accurate = cell.error <= 1 && cell.depth >= MINIMUM_DEPTH;
+            if (accurate || !divisible || evaluatedCount[0] >= pointBudget) {
+                if (leafCount == leaves.length) {
+                    leaves = Arrays.copyOf(leaves, 2 * leaves.length);
+                }
+                leaves[leafCount++] = cell;
+                continue;
+            }
+            int[] columnBounds = split(cell.column0, cell.column1);
+            int[] rowBounds = split(cell.row0, cell.row1);
+            for (int r = 0; r < rowBounds.length - 1; r++) {
+                for (int c = 0; c < columnBounds.length - 1; c++) {
+                    Cell child = new Cell(columnBounds[c], rowBounds[r], columnBounds[c + 1], rowBounds[r + 1],
+                                          cell.depth + 1);
+                    measure(child, evaluate);
+                    queue.add(child);
+                }
+            }
+        }
+        for (Cell cell : queue) {
+            if (leafCount == leaves.length) {
+                leaves = Arrays.copyOf(leaves, 2 * leaves.length);
+            }
+            leaves[leafCount++] = cell;
+        }
+
+        for (int l = 0; l < leafCount; l++) {
+            fill(leaves[l], columns, values, known);
+        }
+        int[] evaluated = new int[evaluatedCount[0]];
+        int e = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < known.length; i++) {
+            if (known[i]) {
+                evaluated[e++] = i;
+                if (values[i] < min) {
+                    min = values[i];
+                }
+                if (values[i] > max) {
+                    max = values[i];
+                }
+            }
+        }
+        return new Samples(evaluated, min, max);
+    }
+
+    /**
+     * Value of the function at a sample of the lattice (evaluated at most once)
+     */
+    private interface Evaluation {
+        double at(int column, int row);
+    }
+
+    /**
+     * Evaluates the corners and the test points (centre and edge midpoints) of the cell and computes its error,
+     * the error is relative to the tolerances (above 1 means the cell should be subdivided)
+     */
+    private void measure(Cell cell, Evaluation evaluate) {
+        double v00 = evaluate.at(cell.column0, cell.row0);
+        double v10 = evaluate.at(cell.column1, cell.row0);
+        double v01 = evaluate.at(cell.column0, cell.row1);
+        double v11 = evaluate.at(cell.column1, cell.row1);
+        double delta = Math.max(Math.max(v00, v10), Math.max(v01, v11)) - Math.min(Math.min(v00, v10), Math.min(v01, v11));
+        double curvature = 0;
+        int middleColumn = (cell.column0 + cell.column1) >>> 1;
+        int middleRow = (cell.row0 + cell.row1) >>> 1;
+        int[][] testPoints = {{middleColumn, middleRow}, {middleColumn, cell.row0}, {middleColumn, cell.row1},
+                              {cell.column0, middleRow}, {cell.column1, middleRow}};
+        for (int[] point : testPoints) {
+            double interpolated = bilinear(cell, point[0], point[1], v00, v10, v01, v11);
+            curvature = Math.max(curvature, Math.abs(evaluate.at(point[0], point[1]) - interpolated));
+        }
+        cell.error = Math.max(curvature / curvatureTolerance, delta / deltaTolerance);
+        if (Double.isNaN(cell.error)) {
+            cell.error = Double.POSITIVE_INFINITY;
+        }
+        if (cell.depth < MINIMUM_DEPTH) {
+            // shallow cells go first, so the base lattice is complete before the budget is spent elsewhere
+            cell.error += Double.MAX_VALUE / 2 * (MINIMUM_DEPTH - cell.depth) / MINIMUM_DEPTH;
+        }
+    }
+
+    /**
+     * Interpolates the values of samples inside the leaf cell that were not evaluated
+     */
+    private static void fill(Cell cell, int columns, double[] values, boolean[] known) {
+        double v00 = values[cell.row0 * columns + cell.column0];
+        double v10 = values[cell.row0 * columns + cell.column1];
+        double v01 = values[cell.row1 * columns + cell.column0];
+        double v11 = values[cell.row1 * columns + cell.column1];
+        for (int row = cell.row0; row <= cell.row1; row++) {
+            for (int column = cell.column0; column <= cell.column1; column++) {
+                int index = row * columns + column;
+                if (!known[index]) {
+                    values[index] = bilinear(cell, column, row, v00, v10, v01, v11);
+                }
+            }
+        }
+    }
+
+    private static double bilinear(Cell cell, int column, int row, double v00, double v10, double v01, double v11) {
+        double s = (cell.column1 == cell.column0) ? 0 : (double) (column - cell.column0) / (cell.column1 - cell.column0);
+        double t = (cell.row1 == cell.row0) ? 0 : (double) (row - cell.row0) / (cell.row1 - cell.row0);
+        return (v00 * (1 - s) + v10 * s) * (1 - t) + (v01 * (1 - s) + v11 * s) * t;
+    }
+
+    /**
+     * @return bounds of the halves of the interval [from, to], or the interval itself if it cannot be split
+     */
+    private static int[] split(int from, int to) {
+        return (to - from >= 2) ? new int[]{from, (from + to) >>> 1, to} : new int[]{from, to};
+    }
+}
@@ -0,0 +1,290 @@
+package vizualizator3d.main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Headless command-line mode evaluating plots and normalizing point-clouds into binary files, without any display;
+ * Started by its own main (no JavaFX is needed then) or by MyPlotApp.main with arguments, see USAGE;
+ * Functions are evaluated row by row on a pool using all cores (without the tile cache of the viewer, every sample
+ * is evaluated once anyway), clouds are read by BinaryCloudFile (in parallel, through the sidecar if there is one);
+ * Windows whose samples do not fit into the heap are refused before anything is allocated; The results are streamed
+ * to the output through a FileChannel in blocks of BLOCK_SIZE bytes;
+ * Heightmap layout (little-endian):
+ * -> int magic "VZHM", int version;
+ * -> int columns, int rows;
+ * -> double x and y of the first sample, double resolution;
+ * -> double min and max of the values;
+ * -> float32 value of every sample, row by row (rows go along y, columns along x);
+ * Point file layout: float32 x, y, z of every point (little-endian), normalized as in the viewer
+ * @author Katarína Osvaldová
+ */
+public final class BatchExport {
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage:",
+            "  function <name or expression> <output> [--x-min -10] [--y-min -10] [--length 20] [--resolution 0.15]",
+            "           [--zoom 1] [--time 0]",
+            "      evaluates an example function (e.g. Function1, Wave) or an expression of x, y (and t) into a heightmap",
+            "  cloud <input.xyz> <output> [--multiplier 1] [--voxel-size <per mille>] [--target <points>]",
+            "      loads and normalizes a point-cloud, optionally downsampled, into a float32 point file",
+            "  batch <jobs file>",
+            "      runs the function and cloud jobs of the file, one per line (expressions without spaces, # comments)");
+    private static final int HEIGHTMAP_MAGIC = 0x4D_48_5A_56;
+    private static final int HEIGHTMAP_VERSION = 1;
+    private static final int HEIGHTMAP_HEADER_SIZE = 56;
+    /**
+     * Size of the blocks written to the output
+     */
+    private static final int BLOCK_SIZE = 1 << 20;
+    /**
+     * Number of rows evaluated by a single task
+     */
+    static final int LEAF_ROWS = 8;
+    /**
+     * Bytes of the heap taken per sample of an evaluated window: the values and the three height arrays of the grid
+     */
+    private static final int BYTES_PER_SAMPLE = 4 * Double.BYTES;
+
+    private BatchExport() {
+    }
+
+    /**
+     * Runs the command and exits with its status
+     * @param args command and its arguments, see USAGE
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the command
+     * @param args command and its arguments, see USAGE
+     * @return exit status: 0 on success, 1 if a job failed, 2 if the command is not valid
+     */
+    public static int run(String[] args) {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            if (args.length == 2 && args[0].equals("batch")) {
+                int status = 0;
+                for (String line : Files.readAllLines(Path.of(args[1]))) {
+                    line = line.strip();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        status = Math.max(status, runJob(line.split("\\s+"), pool));
+                    }
+                }
+                return status;
+            }
+            return runJob(args, pool);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 1;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs a single function or cloud job, reporting its result on the standard output
+     */
+    private static int runJob(String[] args, ForkJoinPool pool) {
+        try {
+            if (args.length < 3 || !args[0].equals("function") && !args[0].equals("cloud")) {
+                throw new IllegalArgumentException("Unknown command " + String.join(" ", args));
+            }
+            Map<String, Double> options = parseOptions(Arrays.asList(args).subList(3, args.length));
+            long start = System.nanoTime();
+            String result = args[0].equals("function") ? exportFunction(args[1], Path.of(args[2]), options, pool)
+                                                       : exportCloud(Path.of(args[1]), Path.of(args[2]), options);
+            System.out.printf(Locale.ROOT, "%s: %s in %.1f ms%n", args[2], result, (System.nanoTime() - start) / 1e6);
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        } catch (IOException | RuntimeException e) {
+            // a failed job does not stop the other jobs of a batch
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    /**
+     * @param arguments pairs of option names and numbers
+     * @return values of the options by their names (without the dashes)
+     * @throws IllegalArgumentException if an option has no value or the value is not a number
+     */
+    private static Map<String, Double> parseOptions(List<String> arguments) {
+        Map<String, Double> options = new HashMap<>();
+        for (int i = 0; i < arguments.size(); i += 2) {
+            String name = arguments.get(i);
+            if (!name.startsWith("--") || i + 1 == arguments.size()) {
+                throw new IllegalArgumentException("Expected an option with a value at " + name);
+            }
+            try {
+                options.put(name.substring(2), Double.parseDouble(arguments.get(i + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + arguments.get(i + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Evaluates the function over the window and writes the heightmap
+     * @return description of the result
+     */
+    private static String exportFunction(String function, Path output, Map<String, Double> options, ForkJoinPool pool)
+            throws IOException {
+        DoubleBinaryOperator operator = ExampleFunctions.getAll().get(function);
+        if (operator == null) {
+            operator = new ExpressionCompiler().compile(function);
+        }
+        double time = options.getOrDefault("time", 0.0);
+        if (operator instanceof TimeFunction) {
+            TimeFunction timeFunction = (TimeFunction) operator;
+            operator = (x, y) -> timeFunction.applyAsDouble(x, y, time);
+        }
+        double length = options.getOrDefault("length", 20.0);
+        double resolution = options.getOrDefault("resolution", .15);
+        if (!(length >= 0) || !(resolution > 0)) {
+            throw new IllegalArgumentException("The window of length " + length + " cannot be sampled with resolution "
+                                               + resolution);
+        }
+        double samples = Math.pow(Math.floor(length / resolution) + 1, 2);
+        long heap = Runtime.getRuntime().maxMemory();
+        if (samples > Integer.MAX_VALUE - 8 || samples * BYTES_PER_SAMPLE > heap) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "The window of length %s sampled with resolution %s needs %.0f MB, the heap only has %d MB",
+                    length, resolution, samples * BYTES_PER_SAMPLE / 1e6, heap / 1_000_000));
+        }
+        FunctionGrid grid = new FunctionGrid(options.getOrDefault("x-min", -10.0), options.getOrDefault("y-min", -10.0),
+                                             length, resolution);
+        double[] values = new double[grid.size()];
+        RowTask evaluation = new RowTask(grid, operator, options.getOrDefault("zoom", 1.0), values, 0, grid.getRows());
+        pool.invoke(evaluation);
+
+        try (FileChannel channel = open(output)) {
+            ByteBuffer header = ByteBuffer.allocate(HEIGHTMAP_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(HEIGHTMAP_MAGIC).putInt(HEIGHTMAP_VERSION).putInt(grid.getColumns()).putInt(grid.getRows());
+            header.putDouble(grid.getX(0)).putDouble(grid.getY(0)).putDouble(grid.getResolution());
+            header.putDouble(evaluation.min).putDouble(evaluation.max);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 0; offset < values.length; ) {
+                int count = Math.min(BLOCK_SIZE / Float.BYTES, values.length - offset);
+                block.clear();
+                for (int i = 0; i < count; i++) {
+                    block.putFloat((float) values[offset + i]);
+                }
+                block.flip();
+                writeFully(channel, block);
+                offset += count;
+            }
+        }
+        return String.format(Locale.ROOT, "%d x %d samples, values <%g, %g>", grid.getColumns(), grid.getRows(),
+                             evaluation.min, evaluation.max);
+    }
+
+    /**
+     * Task evaluating the rows [fromRow, toRow) of the grid, splitting them in halves down to LEAF_ROWS rows,
+     * min/max of the values are reduced alongside
+     */
+    private static class RowTask extends RecursiveAction {
+        private final FunctionGrid grid;
+        private final DoubleBinaryOperator function;
+        private final double zoom;
+        private final double[] values;
+        private final int fromRow, toRow;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        RowTask(FunctionGrid grid, DoubleBinaryOperator function, double zoom, double[] values, int fromRow,
+                int toRow) {
+            this.grid = grid;
+            this.function = function;
+            this.zoom = zoom;
+            this.values = values;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > LEAF_ROWS) {
+                int middle = (fromRow + toRow) >>> 1;
+                RowTask first = new RowTask(grid, function, zoom, values, fromRow, middle);
+                RowTask second = new RowTask(grid, function, zoom, values, middle, toRow);
+                invokeAll(first, second);
+                min = Math.min(first.min, second.min);
+                max = Math.max(first.max, second.max);
+                return;
+            }
+            grid.evaluateRows(function, 0, 0, zoom, values, fromRow, toRow);
+            int columns = grid.getColumns();
+            for (int index = fromRow * columns; index < toRow * columns; index++) {
+                if (values[index] < min) {
+                    min = values[index];
+                }
+                if (values[index] > max) {
+                    max = values[index];
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads, optionally downsamples and normalizes the cloud and writes its points
+     * @return description of the result
+     */
+    private static String exportCloud(Path input, Path output, Map<String, Double> options) throws IOException {
+        PointCloud cloud = BinaryCloudFile.load(input);
+        PointCloud retained = cloud;
+        if (options.containsKey("voxel-size")) {
+            retained = VoxelDownsampler.downsample(cloud, (float) (options.get("voxel-size") / 1000 * VoxelDownsampler.getExtent(cloud)));
+        } else if (options.containsKey("target")) {
+            retained = VoxelDownsampler.downsampleToCount(cloud, options.get("target").intValue());
+        }
+        FloatBuffer coordinates = retained.normalizedCoordinates(options.getOrDefault("multiplier", 1.0).floatValue());
+
+        try (FileChannel channel = open(output)) {
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int floatCount = 3 * retained.getPointCount();
+            for (int offset = 0; offset < floatCount; ) {
+                int length = Math.min(BLOCK_SIZE / Float.BYTES, floatCount - offset);
+                block.clear();
+                block.asFloatBuffer().put(0, coordinates, offset, length);
+                block.limit(length * Float.BYTES);
+                writeFully(channel, block);
+                offset += length;
+            }
+        }
+        return String.format(Locale.ROOT, "%d of %d points", retained.getPointCount(), cloud.getPointCount());
+    }
+
+    private static FileChannel open(Path output) throws IOException {
+        return FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package vizualizator3d.main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Binary sidecar format for point-clouds;
+ * The first load of an .xyz file parses the text and writes a "<file>.xyzb" next to it,
+ * every later load memory-maps the sidecar and skips the text parsing entirely; The coordinates of a loaded cloud
+ * are the mapped sidecar itself (no copy on the heap), the file is paged in and out by the operating system;
+ * Layout (little-endian):
+ * -> int magic "XYZB", int version;
+ * -> long size and long last-modified time of the source .xyz file (a changed source invalidates the sidecar);
+ * -> int point count;
+ * -> float[3] min, float[3] max of the bounding box;
+ * -> float[3] centre and float scale of the normalization;
+ * -> padding to HEADER_SIZE;
+ * -> float32 x, y, z of every point
+ * @author Katarína Osvaldová
+ */
+public class BinaryCloudFile {
+    public static final String EXTENSION = ".xyzb";
+    private static final int MAGIC = 0x42_5A_59_58;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 72;
+
+    private BinaryCloudFile() {
+    }
+
+    /**
+     * Receiver of the cost of reading a cloud
+     */
+    @FunctionalInterface
+    public interface ReadListener {
+        /**
+         * @param nanos duration of the sidecar read or of the text parsing (without writing the sidecar)
+         * @param bytes size of the read file
+         * @param parsed true if the text was parsed, false if the sidecar was read
+         */
+        void read(long nanos, long bytes, boolean parsed);
+    }
+
+    /**
+     * Loads a point-cloud, using the sidecar if it is up to date and creating it otherwise
+     * @param source path to the .xyz file
+     * @return loaded point-cloud
+     * @throws IOException if neither the sidecar nor the source can be read
+     */
+    public static PointCloud load(Path source) throws IOException {
+        return load(source, (coordinates, offset, pointCount, progress) -> {}, () -> false);
+    }
+
+    /**
+     * Loads a point-cloud like load(source), handing the points to the consumer in batches while they are read
+     * @param source path to the .xyz file
+     * @param consumer receiver of the batches, called on the loading thread
+     * @param cancelled checked before each batch, once it returns true the loading stops
+     * @return loaded point-cloud
+     * @throws IOException if neither the sidecar nor the source can be read
+     * @throws CancellationException if the loading was cancelled
+     */
+    public static PointCloud load(Path source, PointCloud.BatchConsumer consumer, BooleanSupplier cancelled) throws IOException {
+        return load(source, consumer, cancelled, (nanos, bytes, parsed) -> {});
+    }
+
+    /**
+     * Loads a point-cloud like load(source, consumer, cancelled), reporting the duration of the read or of the parsing
+     * @param source path to the .xyz file
+     * @param consumer receiver of the batches, called on the loading thread
+     * @param cancelled checked before each batch, once it returns true the loading stops
+     * @param readListener receiver of the cost of the read, called on the loading thread once the cloud is read
+     * @return loaded point-cloud
+     * @throws IOException if neither the sidecar nor the source can be read
+     * @throws CancellationException if the loading was cancelled
+     */
+    public static PointCloud load(Path source, PointCloud.BatchConsumer consumer, BooleanSupplier cancelled,
+                                  ReadListener readListener) throws IOException {
+        Path sidecar = sidecarOf(source);
+        long sourceSize = Files.size(source);
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
+        long start = System.nanoTime();
+        if (Files.exists(sidecar)) {
+            PointCloud cloud = read(sidecar, sourceSize, sourceModified, consumer, cancelled);
+            if (cloud != null) {
+                readListener.read(System.nanoTime() - start, Files.size(sidecar), false);
+                return cloud;
+            }
+        }
+        start = System.nanoTime();
+        PointCloud cloud = XYZReader.read(source, consumer, cancelled);
+        readListener.read(System.nanoTime() - start, sourceSize, true);
+        try {
+            write(sidecar, cloud, sourceSize, sourceModified);
+            // the mapped sidecar replaces the direct buffer of the parsed cloud
+            PointCloud mapped = read(sidecar, sourceSize, sourceModified, (coordinates, offset, pointCount, progress) -> {},
+                                     () -> false);
+            if (mapped != null) {
+                return mapped;
+            }
+        } catch (IOException e) {
+            // the sidecar is only an optimisation, a read-only directory must not prevent displaying
+            e.printStackTrace();
+        }
+        return cloud;
+    }
+
+    /**
+     * @param source path to the .xyz file
+     * @return path of its binary sidecar
+     */
+    public static Path sidecarOf(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Memory-maps the sidecar and reads the cloud from it, handing the points to the consumer in batches
+     * of at most XYZReader.BATCH_POINTS points; The coordinates of the cloud are a view of the mapping
+     * @param sidecar path to the sidecar
+     * @param sourceSize expected size of the source file
+     * @param sourceModified expected last-modified time of the source file
+     * @param consumer receiver of the batches
+     * @param cancelled checked before each batch, once it returns true the reading stops
+     * @return cloud, or null if the sidecar is stale or not a valid sidecar
+     * @throws IOException if the sidecar cannot be read
+     * @throws CancellationException if the reading was cancelled
+     */
+    static PointCloud read(Path sidecar, long sourceSize, long sourceModified, PointCloud.BatchConsumer consumer,
+                           BooleanSupplier cancelled) throws IOException {
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != sourceSize || buffer.getLong() != sourceModified) {
+                return null;
+            }
+            int pointCount = buffer.getInt();
+            if (pointCount < 0 || size != HEADER_SIZE + 12L * pointCount) {
+                return null;
+            }
+            float[] min = readVector(buffer);
+            float[] max = readVector(buffer);
+            float[] centre = readVector(buffer);
+            float scale = buffer.getFloat();
+
+            // the mapping stays valid after the channel is closed; a rewritten sidecar is moved over it, never written into
+            buffer.position(HEADER_SIZE);
+            FloatBuffer coordinates = buffer.asFloatBuffer();
+            for (int offset = 0; offset < pointCount; offset += XYZReader.BATCH_POINTS) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Reading of " + sidecar + " was cancelled");
+                }
+                int count = Math.min(XYZReader.BATCH_POINTS, pointCount - offset);
+                consumer.accept(coordinates, offset, count, (double) (offset + count) / pointCount);
+            }
+            return new PointCloud(coordinates, pointCount, min, max, centre, scale);
+        }
+    }
+
+    /**
+     * Writes the cloud into the sidecar; the file is written to a temporary file first and then moved,
+     * so that a concurrently loading reader never sees a half-written sidecar
+     * @param sidecar path to the sidecar
+     * @param cloud cloud to write
+     * @param sourceSize size of the source file
+     * @param sourceModified last-modified time of the source file
+     * @throws IOException if the sidecar cannot be written
+     */
+    static void write(Path sidecar, PointCloud cloud, long sourceSize, long sourceModified) throws IOException {
+        Path temporary = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceModified);
+            header.putInt(cloud.getPointCount());
+            for (int axis = 0; axis < 3; axis++) {
+                header.putFloat(cloud.getMin(axis));
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                header.putFloat(cloud.getMax(axis));
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                header.putFloat(cloud.getNormalizationCentre(axis));
+            }
+            header.putFloat(cloud.getNormalizationScale());
+            header.clear();
+            writeFully(channel, header);
+
+            ByteBuffer block = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer coordinates = cloud.getCoordinates();
+            int floatCount = 3 * cloud.getPointCount();
+            for (int offset = 0; offset < floatCount; ) {
+                int length = Math.min(block.capacity() / Float.BYTES, floatCount - offset);
+                block.clear();
+                block.asFloatBuffer().put(0, coordinates, offset, length);
+                block.limit(length * Float.BYTES);
+                writeFully(channel, block);
+                offset += length;
+            }
+        }
+        Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static float[] readVector(ByteBuffer buffer) {
+        return new float[]{buffer.getFloat(), buffer.getFloat(), buffer.getFloat()};
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package vizualizator3d.main;
+
+import javafx.scene.shape.MeshView;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * In-process cache of loaded point-clouds and of their render geometry;
+ * Two kinds of entries share one memory budget: the loaded clouds (their off-heap coordinates as read from the file),
+ * so that changing the reduction of a cloud does not read it again, and the geometry of a cloud prepared for displaying
+ * (the octree of the reduced cloud and the meshes last built from it); Entries are keyed by the file together with
+ * its size and modification time, so a changed file is loaded again; The file is stat'd once per load (see Source),
+ * outside the monitor of the cache; The least recently used entries are evicted once the cache exceeds its budget
+ * @author Katarína Osvaldová
+ */
+public class CloudCache {
+    private final long byteBudget;
+    private long bytes;
+    /**
+     * Entries in the order of their use, values are PointClouds or Geometries
+     */
+    private final Map<Key, Object> entries = new LinkedHashMap<>(16, .75f, true);
+    private final Map<Key, Long> entryBytes = new LinkedHashMap<>();
+
+    /**
+     * A file of a cloud with its size and modification time, read by a single stat when the source is created;
+     * A load creates one source and uses it for all its lookups, so the cache itself never touches the file system
+     */
+    public static final class Source {
+        private final Path path;
+        private final long size;
+        private final long modified;
+
+        private Source(Path path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * @param source the .xyz file
+         * @return the file with its current size and modification time (both -1 if the file cannot be stat'd,
+         * reading it fails later anyway)
+         */
+        public static Source of(Path path) {
+            Path normalized = path.toAbsolutePath().normalize();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(normalized, BasicFileAttributes.class);
+                return new Source(normalized, attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return new Source(normalized, -1, -1);
+            }
+        }
+
+        /**
+         * @return absolute normalized path to the file
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Source)) {
+                return false;
+            }
+            Source source = (Source) o;
+            return path.equals(source.path) && size == source.size && modified == source.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+
+    /**
+     * Identification of an entry: the file and, for geometry, the reduction and multiplier it was prepared with
+     */
+    private static final class Key {
+        private final Source source;
+        private final String reduction;
+        private final float multiplier;
+
+        Key(Source source, String reduction, float multiplier) {
+            this.source = source;
+            this.reduction = reduction;
+            this.multiplier = multiplier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return source.equals(key.source) && Objects.equals(reduction, key.reduction)
+                   && multiplier == key.multiplier;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, reduction, multiplier);
+        }
+    }
+
+    /**
+     * Point-cloud prepared for displaying;
+     * The octree, the k-d tree for picking, the normalization and point counts are fixed, the meshes and the octree
+     * nodes they were built from are replaced by the JavaFX thread whenever the level of detail changes (followed
+     * by update)
+     */
+    public static class Geometry {
+        private final Key key;
+        private final Octree octree;
+        private final KdTree kdTree;
+        private final float[] centre;
+        private final float scale;
+        private final int loadedPointCount;
+        private final int retainedPointCount;
+        private List<MeshView> meshes = new ArrayList<>();
+        private List<Octree.Node> nodes = new ArrayList<>();
+
+        private Geometry(Key key, Octree octree, KdTree kdTree, float[] centre, float scale, int loadedPointCount,
+                         int retainedPointCount) {
+            this.key = key;
+            this.octree = octree;
+            this.kdTree = kdTree;
+            this.centre = centre.clone();
+            this.scale = scale;
+            this.loadedPointCount = loadedPointCount;
+            this.retainedPointCount = retainedPointCount;
+        }
+
+        /**
+         * @return octree of the normalized coordinates of the retained cloud
+         */
+        public Octree getOctree() {
+            return octree;
+        }
+
+        /**
+         * @return k-d tree of the normalized coordinates of the retained cloud
+         */
+        public KdTree getKdTree() {
+            return kdTree;
+        }
+
+        /**
+         * Reverts the normalization of a coordinate
+         * @param axis 0 = x, 1 = y, 2 = z
+         * @param coordinate normalized coordinate (e.g. of a point of the octree)
+         * @return the coordinate in the file
+         */
+        public double toFileCoordinate(int axis, float coordinate) {
+            return centre[axis] + coordinate / scale;
+        }
+
+        /**
+         * @return number of points of the loaded cloud
+         */
+        public int getLoadedPointCount() {
+            return loadedPointCount;
+        }
+
+        /**
+         * @return number of points left after the reduction
+         */
+        public int getRetainedPointCount() {
+            return retainedPointCount;
+        }
+
+        /**
+         * @return meshes last built for the cloud, empty if none were built yet
+         */
+        public List<MeshView> getMeshes() {
+            return meshes;
+        }
+
+        /**
+         * @return octree nodes the meshes were built from
+         */
+        public List<Octree.Node> getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @param nodes octree nodes the meshes were built from
+         * @param meshes meshes displaying the nodes
+         */
+        public void setMeshes(List<Octree.Node> nodes, List<MeshView> meshes) {
+            this.nodes = nodes;
+            this.meshes = meshes;
+        }
+
+        private long getByteSize() {
+            return octree.getByteSize() + kdTree.getByteSize() + PointCloudMesh.getByteSize(meshes);
+        }
+    }
+
+    /**
+     * @param byteBudget maximal (estimated) memory taken by the cached clouds and geometry
+     */
+    public CloudCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * @param source the .xyz file
+     * @return the loaded cloud, null if it is not cached
+     */
+    public synchronized PointCloud getCloud(Source source) {
+        return (PointCloud) entries.get(new Key(source, null, 0));
+    }
+
+    /**
+     * @param source the .xyz file
+     * @param cloud cloud loaded from the file
+     */
+    public synchronized void putCloud(Source source, PointCloud cloud) {
+        put(new Key(source, null, 0), cloud, cloud.getByteSize());
+    }
+
+    /**
+     * @param source the .xyz file
+     * @param reduction identification of the reduction of the cloud (e.g. its settings)
+     * @param multiplier factor applied to the normalized coordinates of the octree
+     * @return the prepared geometry, null if it is not cached
+     */
+    public synchronized Geometry getGeometry(Source source, String reduction, float multiplier) {
+        return (Geometry) entries.get(new Key(source, reduction, multiplier));
+    }
+
+    /**
+     * Creates and caches the geometry of a cloud
+     * @param source the .xyz file
+     * @param reduction identification of the reduction of the cloud (e.g. its settings)
+     * @param multiplier factor applied to the normalized coordinates of the octree
+     * @param octree octree of the normalized coordinates of the retained cloud
+     * @param kdTree k-d tree of the normalized coordinates of the retained cloud
+     * @param centre coordinates of the file mapped to 0 by the normalization
+     * @param scale multiplier of the normalization, including the multiplier of the geometry
+     * @param loadedPointCount number of points of the loaded cloud
+     * @param retainedPointCount number of points left after the reduction
+     * @return the created geometry
+     */
+    public synchronized Geometry putGeometry(Source source, String reduction, float multiplier, Octree octree,
+                                             KdTree kdTree, float[] centre, float scale, int loadedPointCount,
+                                             int retainedPointCount) {
+        Geometry geometry = new Geometry(new Key(source, reduction, multiplier), octree, kdTree, centre, scale,
+                                         loadedPointCount, retainedPointCount);
+        put(geometry.key, geometry, geometry.getByteSize());
+        return geometry;
+    }
+
+    /**
+     * Accounts for the changed meshes of the geometry, if it is still cached
+     * @param geometry geometry whose meshes were replaced
+     */
+    public synchronized void update(Geometry geometry) {
+        if (entries.get(geometry.key) == geometry) {
+            put(geometry.key, geometry, geometry.getByteSize());
+        }
+    }
+
+    /**
+     * @return estimated memory taken by the cached clouds and geometry
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Inserts or replaces the entry and evicts the least recently used ones over the budget, possibly the entry itself
+     */
+    private void put(Key key, Object value, long size) {
+        entries.put(key, value);
+        Long previous = entryBytes.put(key, size);
+        bytes += size - ((previous == null) ? 0 : previous);
+        Iterator<Key> eldest = entries.keySet().iterator();
+        while (bytes > byteBudget && eldest.hasNext()) {
+            bytes -= entryBytes.remove(eldest.next());
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package vizualizator3d.main;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Service loading point-clouds on a background thread;
+ * Points are handed to the listener in batches while the file is read, so the first points can be displayed
+ * long before the whole cloud is loaded; The loaded cloud is reduced (e.g. downsampled by VoxelDownsampler)
+ * and its octree and k-d tree are built on the loading thread as well (the k-d tree in parallel); Loaded clouds
+ * and their geometry are kept in a CloudCache, a cached geometry is published right away and a cached cloud is not
+ * read again;
+ * Every load supersedes the previous one: a superseded load stops at its next batch and none of its batches
+ * or results are published anymore; Listener calls go through the publisher (e.g. Platform::runLater);
+ * Clouds can be prefetched into the cache, prefetching gives way to every requested load
+ * @author Katarína Osvaldová
+ */
+public class CloudLoader {
+    private final CloudCache cache;
+    private final Executor publisher;
+    /**
+     * Single loading thread, loads are run one after another (a superseded one stops quickly)
+     */
+    private final ExecutorService loadingThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cloud-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Number of the latest load, a load is superseded as soon as this changes
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * Number of requested loads waiting for the loading thread, prefetching stops while there are any
+     */
+    private final AtomicInteger pendingLoads = new AtomicInteger();
+
+    /**
+     * Receiver of a load, called through the publisher
+     */
+    public interface Listener {
+        /**
+         * @param coordinates packed x, y, z coordinates containing the batch (absolute indices), never modified afterwards
+         * @param offset index of the first point of the batch in coordinates
+         * @param pointCount number of points in the batch
+         * @param progress fraction of the file read so far, <0, 1>
+         */
+        void batch(FloatBuffer coordinates, int offset, int pointCount, double progress);
+
+        /**
+         * Called once the cloud was read from its sidecar or parsed, not for clouds taken from the cache
+         * @param nanos duration of the sidecar read or of the parsing
+         * @param bytes size of the read file
+         * @param parsed true if the text was parsed, false if the sidecar was read
+         */
+        default void read(long nanos, long bytes, boolean parsed) {
+        }
+
+        /**
+         * @param geometry geometry of the loaded and reduced cloud
+         */
+        void finished(CloudCache.Geometry geometry);
+    }
+
+    /**
+     * Reduction of a loaded cloud before it is indexed, identified by its name in the cache
+     */
+    public static class Reduction {
+        /**
+         * Reduction keeping the cloud as it is
+         */
+        public static final Reduction NONE = new Reduction("none", UnaryOperator.identity());
+        private final String name;
+        private final UnaryOperator<PointCloud> operator;
+
+        /**
+         * @param name identification of the reduction, reductions with the same name must give the same result
+         * @param operator function reducing a cloud, called on the loading thread
+         */
+        public Reduction(String name, UnaryOperator<PointCloud> operator) {
+            this.name = name;
+            this.operator = operator;
+        }
+    }
+
+    /**
+     * @param cache cache of the loaded clouds and of their geometry
+     * @param publisher executor receiving the listener calls
+     */
+    public CloudLoader(CloudCache cache, Executor publisher) {
+        this.cache = cache;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Starts loading the cloud (through the cache or its binary sidecar, see BinaryCloudFile), superseding any running load
+     * @param source path to the .xyz file
+     * @param multiplier factor applied to the normalized coordinates of the octree (e.g. to convert into scene units)
+     * @param reduction reduction of the loaded cloud before it is indexed
+     * @param listener receiver of the batches and of the loaded cloud
+     */
+    public void load(Path source, float multiplier, Reduction reduction, Listener listener) {
+        long request = generation.incrementAndGet();
+        CloudCache.Source file = CloudCache.Source.of(source);
+        CloudCache.Geometry cached = cache.getGeometry(file, reduction.name, multiplier);
+        if (cached != null) {
+            publish(request, () -> listener.finished(cached));
+            return;
+        }
+        pendingLoads.incrementAndGet();
+        loadingThread.execute(() -> {
+            pendingLoads.decrementAndGet();
+            if (generation.get() != request) {
+                return;
+            }
+            CloudCache.Geometry geometry;
+            try {
+                geometry = prepare(file, multiplier, reduction,
+                                   (coordinates, offset, pointCount, progress) -> publish(request,
+                                           () -> listener.batch(coordinates, offset, pointCount, progress)),
+                                   (nanos, bytes, parsed) -> publish(request,
+                                           () -> listener.read(nanos, bytes, parsed)),
+                                   () -> generation.get() != request);
+            } catch (CancellationException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+            publish(request, () -> listener.finished(geometry));
+        });
+    }
+
+    /**
+     * Loads the clouds into the cache in the background, one after another, unless they are cached already;
+     * Prefetching is interrupted by every requested load and resumed after it
+     * @param sources paths to the .xyz files
+     * @param multiplier factor applied to the normalized coordinates of the octrees
+     * @param reduction reduction of the loaded clouds before they are indexed
+     */
+    public void prefetch(List<Path> sources, float multiplier, Reduction reduction) {
+        for (Path source : sources) {
+            loadingThread.execute(() -> prefetch(source, multiplier, reduction));
+        }
+    }
+
+    /**
+     * Cancels the running load, none of its batches or results will be published
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Prefetches a single cloud on the loading thread, requeueing it behind the requested loads if there are any
+     */
+    private void prefetch(Path source, float multiplier, Reduction reduction) {
+        try {
+            if (pendingLoads.get() > 0) {
+                throw new CancellationException();
+            }
+            prepare(CloudCache.Source.of(source), multiplier, reduction,
+                    (coordinates, offset, pointCount, progress) -> {},
+                    (nanos, bytes, parsed) -> {}, () -> pendingLoads.get() > 0);
+        } catch (CancellationException e) {
+            loadingThread.execute(() -> prefetch(source, multiplier, reduction));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Takes the geometry of the cloud from the cache, or creates and caches it (reading the cloud only if it is not cached)
+     * @param source the file, stat'd once by the caller for all lookups of the load
+     * @throws CancellationException once cancelled returns true, nothing is cached then
+     */
+    private CloudCache.Geometry prepare(CloudCache.Source source, float multiplier, Reduction reduction,
+                                        PointCloud.BatchConsumer consumer, BinaryCloudFile.ReadListener readListener,
+                                        BooleanSupplier cancelled)
+            throws IOException {
+        CloudCache.Geometry geometry = cache.getGeometry(source, reduction.name, multiplier);
+        if (geometry != null) {
+            return geometry;
+        }
+        PointCloud cloud = cache.getCloud(source);
+        if (cloud == null) {
+            cloud = BinaryCloudFile.load(source.getPath(), consumer, cancelled, readListener);
+            cache.putCloud(source, cloud);
+        }
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+        PointCloud retained = reduction.operator.apply(cloud);
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+        FloatBuffer normalized = retained.normalizedCoordinates(multiplier);
+        Octree octree = new Octree(normalized, retained.getPointCount());
+        // the octree keeps its own copy, the k-d tree reorders the normalized coordinates in place
+        KdTree kdTree = new KdTree(normalized, retained.getPointCount(), ForkJoinPool.commonPool());
+        float[] centre = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            centre[axis] = retained.getNormalizationCentre(axis);
+        }
+        return cache.putGeometry(source, reduction.name, multiplier, octree, kdTree, centre,
+                                 retained.getNormalizationScale() * multiplier, cloud.getPointCount(), retained.getPointCount());
+    }
+
+    private void publish(long request, Runnable call) {
+        publisher.execute(() -> {
+            if (generation.get() == request) {
+                call.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package vizualizator3d.main;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+
+/**
+ * Quantized colour palette for value colouring;
+ * The palette holds a lookup table of ARGB colours linearly interpolated between two colours and one shared
+ * PhongMaterial per entry; Values are mapped to entries (buckets) by index, so displayed objects can reference
+ * the shared materials and a change of colours only touches the palette
+ * @author Katarína Osvaldová
+ */
+public class ColourPalette {
+    /**
+     * Default number of colours, one per percent of the value range
+     */
+    public static final int DEFAULT_SIZE = 101;
+    private final int[] argb;
+    private final PhongMaterial[] materials;
+
+    /**
+     * @param size number of colours
+     * @param from colour of the fraction 0
+     * @param to colour of the fraction 1
+     */
+    public ColourPalette(int size, Color from, Color to) {
+        argb = new int[size];
+        materials = new PhongMaterial[size];
+        for (int i = 0; i < size; i++) {
+            materials[i] = new PhongMaterial();
+        }
+        setColours(from, to);
+    }
+
+    /**
+     * Recomputes the lookup table and updates the shared materials in place
+     * @param from colour of the fraction 0
+     * @param to colour of the fraction 1
+     */
+    public void setColours(Color from, Color to) {
+        for (int i = 0; i < argb.length; i++) {
+            Color colour = from.interpolate(to, (argb.length == 1) ? 0 : (double) i / (argb.length - 1));
+            argb[i] = ((int) Math.round(colour.getOpacity() * 255) << 24)
+                      | ((int) Math.round(colour.getRed() * 255) << 16)
+                      | ((int) Math.round(colour.getGreen() * 255) << 8)
+                      | (int) Math.round(colour.getBlue() * 255);
+            materials[i].setDiffuseColor(colour);
+        }
+    }
+
+    /**
+     * Position of a value in the gradient between two values
+     * @param value value == from + fraction * difference
+     * @param from value of the fraction 0
+     * @param difference value of the fraction 1 minus from
+     * @return fraction clamped to <0, 1>, NaN if value == from and the difference is 0
+     */
+    public static double fraction(double value, double from, double difference) {
+        double fraction = (value-from) / difference;
+        return (fraction >= 1) ? 1 : ((fraction <= 0) ? 0 : fraction);
+    }
+
+    /**
+     * @return number of colours
+     */
+    public int size() {
+        return argb.length;
+    }
+
+    /**
+     * @param fraction position in the gradient, <0, 1>
+     * @return index of the nearest colour, 0 for NaN
+     */
+    public int bucket(double fraction) {
+        if (!(fraction > 0)) {
+            return 0;
+        }
+        return (fraction >= 1) ? argb.length - 1 : (int) (fraction * (argb.length - 1) + .5);
+    }
+
+    /**
+     * @param bucket index of the colour
+     * @return colour as ARGB
+     */
+    public int getArgb(int bucket) {
+        return argb[bucket];
+    }
+
+    /**
+     * @param bucket index of the colour
+     * @return shared material of the colour
+     */
+    public PhongMaterial getMaterial(int bucket) {
+        return materials[bucket];
+    }
+}
@@ -0,0 +1,347 @@
+package vizualizator3d.main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Extraction of contour lines (isolines) of the values of a FunctionGrid by marching squares;
+ * The cells of the grid are split into tiles aligned to the absolute lattice of the samples (see TileCache.Lattice),
+ * the tiles are processed in parallel on a fork-join pool; Every tile keeps the values and levels it was computed for
+ * and its segments in lattice coordinates, so the next extraction only recomputes the tiles whose values changed
+ * (e.g. after panning, only the newly exposed tiles); Only the tiles of the last extraction are kept;
+ * Saddle cells are resolved by the value in the centre of the cell
+ * @author Katarína Osvaldová
+ */
+public class ContourExtractor {
+    /**
+     * Number of cells along a side of a tile
+     */
+    static final int TILE_CELLS = 16;
+    private final ForkJoinPool pool;
+    /**
+     * Tiles of the last extraction, keyed by their lattice tile column and row
+     */
+    private Map<Long, Tile> tiles = new HashMap<>();
+    private int recomputedTiles;
+
+    /**
+     * @param pool pool processing the tiles
+     */
+    public ContourExtractor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Chooses evenly spaced levels at round values (1, 2 or 5 times a power of ten apart) between min and max,
+     * so that levels stay the same while the range changes a little
+     * @param min minimal value
+     * @param max maximal value
+     * @param count desired number of levels, the result has between about count / 2 and count levels
+     * @return levels in ascending order, empty if the range is empty
+     */
+    public static double[] autoLevels(double min, double max, int count) {
+        if (!(max > min) || Double.isInfinite(max - min) || count < 1) {
+            return new double[0];
+        }
+        double rawStep = (max - min) / count;
+        int exponent = (int) Math.floor(Math.log10(rawStep));
+        double power = Math.pow(10, exponent);
+        int multiple = (2 * power >= rawStep) ? 2 : (5 * power >= rawStep) ? 5 : 10;
+        double step = multiple * power;
+        long first = (long) Math.ceil(min / step);
+        long last = (long) Math.floor(max / step);
+        double[] levels = new double[(int) Math.max(0, last - first + 1)];
+        for (int i = 0; i < levels.length; i++) {
+            // dividing by an exact power of ten keeps e.g. 0.6 instead of 3 * 0.2 = 0.6000000000000001
+            levels[i] = (exponent < 0) ? (first + i) * multiple / Math.pow(10, -exponent) : (first + i) * step;
+        }
+        return levels;
+    }
+
+    /**
+     * Extracts the contour lines of the values at the levels
+     * @param grid grid the values belong to
+     * @param values values indexed as the samples of the grid (NaN and infinite values break the lines)
+     * @param lattice placement of the samples of the grid on the lattice
+     * @param levels values of the contour lines
+     * @return segments as the column, row and value of their two end points (6 floats per segment),
+     * columns and rows are fractional indices of the samples of the grid
+     */
+    public float[] extract(FunctionGrid grid, double[] values, TileCache.Lattice lattice, double[] levels) {
+        long firstColumn = lattice.getFirstColumn();
+        long firstRow = lattice.getFirstRow();
+        int cellColumns = grid.getColumns() - 1;
+        int cellRows = grid.getRows() - 1;
+        if (cellColumns <= 0 || cellRows <= 0) {
+            tiles = new HashMap<>();
+            return new float[0];
+        }
+        long firstTileX = Math.floorDiv(firstColumn, TILE_CELLS);
+        long firstTileY = Math.floorDiv(firstRow, TILE_CELLS);
+        int tileColumns = (int) (Math.floorDiv(firstColumn + cellColumns - 1, TILE_CELLS) - firstTileX + 1);
+        int tileRows = (int) (Math.floorDiv(firstRow + cellRows - 1, TILE_CELLS) - firstTileY + 1);
+        Tile[] previous = new Tile[tileColumns * tileRows];
+        for (int i = 0; i < previous.length; i++) {
+            previous[i] = tiles.get(key(firstTileX + i % tileColumns, firstTileY + i / tileColumns));
+        }
+        Tile[] current = new Tile[previous.length];
+        pool.invoke(new TileTask(grid, values, firstColumn, firstRow, firstTileX, firstTileY, tileColumns, levels,
+                                 previous, current, 0, current.length));
+
+        Map<Long, Tile> extracted = new HashMap<>();
+        int floatCount = 0;
+        recomputedTiles = 0;
+        for (int i = 0; i < current.length; i++) {
+            extracted.put(key(firstTileX + i % tileColumns, firstTileY + i / tileColumns), current[i]);
+            floatCount += current[i].segments.length;
+            if (current[i] != previous[i]) {
+                recomputedTiles++;
+            }
+        }
+        tiles = extracted;
+        float[] segments = new float[floatCount];
+        int s = 0;
+        for (Tile tile : current) {
+            // segments of the tile are relative to its first sample
+            float columnShift = (float) (tile.fromColumn - firstColumn);
+            float rowShift = (float) (tile.fromRow - firstRow);
+            for (int i = 0; i < tile.segments.length; i += 3) {
+                segments[s++] = tile.segments[i] + columnShift;
+                segments[s++] = tile.segments[i + 1] + rowShift;
+                segments[s++] = tile.segments[i + 2];
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @return number of tiles the last extraction had to compute, the others were reused
+     */
+    public int getRecomputedTiles() {
+        return recomputedTiles;
+    }
+
+    /**
+     * @return number of tiles of the last extraction
+     */
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    private static long key(long tileX, long tileY) {
+        return (tileX << 32) ^ (tileY & 0xFFFF_FFFFL);
+    }
+
+    /**
+     * Contour segments of the cells of a tile covered by the grid, with the values and levels they were computed for
+     */
+    private static class Tile {
+        /**
+         * Lattice index of the first sample and the number of samples along both axes
+         */
+        private final long fromColumn, fromRow;
+        private final int width, height;
+        private final double[] samples;
+        private final double[] levels;
+        /**
+         * Column and row (relative to the first sample) and value of the end points of the segments
+         */
+        private final float[] segments;
+
+        Tile(long fromColumn, long fromRow, int width, int height, double[] samples, double[] levels, float[] segments) {
+            this.fromColumn = fromColumn;
+            this.fromRow = fromRow;
+            this.width = width;
+            this.height = height;
+            this.samples = samples;
+            this.levels = levels;
+            this.segments = segments;
+        }
+
+        /**
+         * @return true if the tile was computed for the same samples of the values and the same levels
+         */
+        boolean matches(long fromColumn, long fromRow, int width, int height, double[] levels, double[] values,
+                        int columns, int firstSample) {
+            if (fromColumn != this.fromColumn || fromRow != this.fromRow || width != this.width || height != this.height
+                    || !Arrays.equals(levels, this.levels)) {
+                return false;
+            }
+            for (int row = 0; row < height; row++) {
+                if (!Arrays.equals(values, firstSample + row * columns, firstSample + row * columns + width,
+                                   samples, row * width, (row + 1) * width)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Task processing the tiles [from, to) (indexed row by row), splitting them in halves down to single tiles;
+     * A tile matching its previous version is reused, other tiles are computed
+     */
+    private static class TileTask extends RecursiveAction {
+        private final FunctionGrid grid;
+        private final double[] values;
+        private final long firstColumn, firstRow;
+        private final long firstTileX, firstTileY;
+        private final int tileColumns;
+        private final double[] levels;
+        private final Tile[] previous, current;
+        private final int from, to;
+
+        TileTask(FunctionGrid grid, double[] values, long firstColumn, long firstRow, long firstTileX, long firstTileY,
+                 int tileColumns, double[] levels, Tile[] previous, Tile[] current, int from, int to) {
+            this.grid = grid;
+            this.values = values;
+            this.firstColumn = firstColumn;
+            this.firstRow = firstRow;
+            this.firstTileX = firstTileX;
+            this.firstTileY = firstTileY;
+            this.tileColumns = tileColumns;
+            this.levels = levels;
+            this.previous = previous;
+            this.current = current;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    current[from] = tile(from);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TileTask(grid, values, firstColumn, firstRow, firstTileX, firstTileY, tileColumns, levels,
+                                   previous, current, from, middle),
+                      new TileTask(grid, values, firstColumn, firstRow, firstTileX, firstTileY, tileColumns, levels,
+                                   previous, current, middle, to));
+        }
+
+        /**
+         * Reuses or computes the tile with the given index
+         */
+        private Tile tile(int index) {
+            int columns = grid.getColumns();
+            long tileX = firstTileX + index % tileColumns;
+            long tileY = firstTileY + index / tileColumns;
+            // cells of the grid covered by the tile, a cell is identified by its first sample
+            int fromColumn = (int) Math.max(0, tileX * TILE_CELLS - firstColumn);
+            int toColumn = (int) Math.min(columns - 1, (tileX + 1) * TILE_CELLS - firstColumn);
+            int fromRow = (int) Math.max(0, tileY * TILE_CELLS - firstRow);
+            int toRow = (int) Math.min(grid.getRows() - 1, (tileY + 1) * TILE_CELLS - firstRow);
+            int width = toColumn - fromColumn + 1;
+            int height = toRow - fromRow + 1;
+            int firstSample = fromRow * columns + fromColumn;
+            Tile old = previous[index];
+            if (old != null && old.matches(firstColumn + fromColumn, firstRow + fromRow, width, height, levels, values,
+                                           columns, firstSample)) {
+                return old;
+            }
+            double[] samples = new double[width * height];
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(values, firstSample + row * columns, samples, row * width, width);
+            }
+            return new Tile(firstColumn + fromColumn, firstRow + fromRow, width, height, samples, levels,
+                            march(samples, width, height, levels));
+        }
+    }
+
+    /**
+     * Marching squares over the samples of a tile
+     * @param samples values of the samples, row by row
+     * @param width number of samples in a row
+     * @param height number of rows
+     * @param levels values of the contour lines
+     * @return column, row and value of the end points of the segments
+     */
+    static float[] march(double[] samples, int width, int height, double[] levels) {
+        float[] segments = new float[64];
+        int s = 0;
+        // crossing points on the bottom, right, top and left edge of a cell
+        float[] crossings = new float[8];
+        for (int row = 0; row < height - 1; row++) {
+            for (int column = 0; column < width - 1; column++) {
+                int corner = row * width + column;
+                double v00 = samples[corner];
+                double v10 = samples[corner + 1];
+                double v01 = samples[corner + width];
+                double v11 = samples[corner + width + 1];
+                if (!Double.isFinite(v00) || !Double.isFinite(v10) || !Double.isFinite(v01) || !Double.isFinite(v11)) {
+                    continue;
+                }
+                double low = Math.min(Math.min(v00, v10), Math.min(v01, v11));
+                double high = Math.max(Math.max(v00, v10), Math.max(v01, v11));
+                for (double level : levels) {
+                    if (level < low || level > high) {
+                        continue;
+                    }
+                    boolean a00 = v00 >= level, a10 = v10 >= level, a01 = v01 >= level, a11 = v11 >= level;
+                    int count = 0;
+                    if (a00 != a10) {
+                        crossings[2 * count] = column + fraction(v00, v10, level);
+                        crossings[2 * count++ + 1] = row;
+                    }
+                    if (a10 != a11) {
+                        crossings[2 * count] = column + 1;
+                        crossings[2 * count++ + 1] = row + fraction(v10, v11, level);
+                    }
+                    if (a01 != a11) {
+                        crossings[2 * count] = column + fraction(v01, v11, level);
+                        crossings[2 * count++ + 1] = row + 1;
+                    }
+                    if (a00 != a01) {
+                        crossings[2 * count] = column;
+                        crossings[2 * count++ + 1] = row + fraction(v00, v01, level);
+                    }
+                    if (count < 2) {
+                        continue;
+                    }
+                    if (s + 12 > segments.length) {
+                        segments = Arrays.copyOf(segments, 2 * segments.length);
+                    }
+                    float z = (float) level;
+                    if (count == 2) {
+                        s = segment(segments, s, crossings, 0, 1, z);
+                        continue;
+                    }
+                    // saddle, the crossings are bottom (0), right (1), top (2) and left (3); the corners on the side
+                    // of the level the centre is not on are cut off
+                    boolean centre = (v00 + v10 + v01 + v11) / 4 >= level;
+                    if (a00 != centre) {
+                        s = segment(segments, s, crossings, 0, 3, z);
+                        s = segment(segments, s, crossings, 1, 2, z);
+                    } else {
+                        s = segment(segments, s, crossings, 0, 1, z);
+                        s = segment(segments, s, crossings, 3, 2, z);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(segments, s);
+    }
+
+    /**
+     * @return position of the level between the values a and b, <0, 1>
+     */
+    private static float fraction(double a, double b, double level) {
+        return (float) ((level - a) / (b - a));
+    }
+
+    private static int segment(float[] segments, int s, float[] crossings, int first, int second, float z) {
+        segments[s++] = crossings[2 * first];
+        segments[s++] = crossings[2 * first + 1];
+        segments[s++] = z;
+        segments[s++] = crossings[2 * second];
+        segments[s++] = crossings[2 * second + 1];
+        segments[s++] = z;
+        return s;
+    }
+}
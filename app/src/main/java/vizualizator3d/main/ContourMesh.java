@@ -0,0 +1,77 @@
+package vizualizator3d.main;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Scale;
+
+/**
+ * Contour lines of a FunctionGrid (segments from ContourExtractor) displayed as a single line mesh;
+ * Every segment is a degenerate triangle drawn in DrawMode.LINE, so all lines are one node and one draw call;
+ * The heights of the lines can be rescaled by setZScale without rebuilding the mesh
+ * @author Katarína Osvaldová
+ */
+public class ContourMesh {
+    private final TriangleMesh mesh = new TriangleMesh();
+    private final MeshView view = new MeshView(mesh);
+    private final Scale zScale = new Scale();
+
+    /**
+     * Creates an empty mesh
+     */
+    public ContourMesh() {
+        mesh.getTexCoords().setAll(0, 0);
+        view.setMaterial(new PhongMaterial(Color.BLACK));
+        view.setDrawMode(DrawMode.LINE);
+        view.setCullFace(CullFace.NONE);
+        view.getTransforms().add(zScale);
+    }
+
+    /**
+     * @return node displaying the lines
+     */
+    public MeshView getView() {
+        return view;
+    }
+
+    /**
+     * Replaces the displayed lines
+     * @param grid grid the segments belong to
+     * @param segments column, row and height of the end points of the segments
+     * @param spread multiplier of x and y coordinates
+     */
+    public void update(FunctionGrid grid, float[] segments, double spread) {
+        int vertexCount = segments.length / 3;
+        float[] points = new float[segments.length];
+        double x0 = grid.getX(0);
+        double y0 = grid.getY(0);
+        double step = grid.getResolution();
+        for (int i = 0; i < segments.length; i += 3) {
+            points[i] = (float) ((x0 + segments[i] * step) * spread);
+            points[i + 1] = (float) ((y0 + segments[i + 1] * step) * spread);
+            points[i + 2] = segments[i + 2];
+        }
+        // a segment p0 p1 is the triangle p0 p1 p1, all vertices share the only texture coordinate
+        int[] faces = new int[3 * vertexCount];
+        for (int vertex = 0, f = 0; vertex < vertexCount; vertex += 2) {
+            faces[f] = vertex;
+            faces[f + 2] = vertex + 1;
+            faces[f + 4] = vertex + 1;
+            f += 6;
+        }
+        mesh.getFaces().clear();
+        mesh.getPoints().setAll(points);
+        mesh.getFaces().setAll(faces);
+        zScale.setZ(1);
+    }
+
+    /**
+     * @param factor multiplier of the heights of the displayed lines
+     */
+    public void setZScale(double factor) {
+        zScale.setZ(factor);
+    }
+}
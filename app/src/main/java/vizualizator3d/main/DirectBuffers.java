@@ -0,0 +1,64 @@
+package vizualizator3d.main;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Allocation of off-heap buffers for point data and the working memory of its processing;
+ * Direct buffers keep large coordinate and index arrays out of the Java heap (they count against
+ * -XX:MaxDirectMemorySize instead), so the heap and GC pauses do not grow with the size of a point-cloud;
+ * The buffers use the native byte order, so absolute and bulk accesses are plain memory copies;
+ * A single buffer holds at most Integer.MAX_VALUE bytes (about 178 million points as x, y, z floats)
+ * @author Katarína Osvaldová
+ */
+public final class DirectBuffers {
+    private DirectBuffers() {
+    }
+
+    /**
+     * @param count number of floats
+     * @return zeroed direct buffer of count floats
+     * @throws IllegalArgumentException if the buffer would exceed Integer.MAX_VALUE bytes
+     */
+    public static FloatBuffer floats(long count) {
+        return allocate(count, Float.BYTES).asFloatBuffer();
+    }
+
+    /**
+     * @param count number of ints
+     * @return zeroed direct buffer of count ints
+     * @throws IllegalArgumentException if the buffer would exceed Integer.MAX_VALUE bytes
+     */
+    public static IntBuffer ints(long count) {
+        return allocate(count, Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * @param count number of longs
+     * @return zeroed direct buffer of count longs
+     * @throws IllegalArgumentException if the buffer would exceed Integer.MAX_VALUE bytes
+     */
+    public static LongBuffer longs(long count) {
+        return allocate(count, Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * @param count number of doubles
+     * @return zeroed direct buffer of count doubles
+     * @throws IllegalArgumentException if the buffer would exceed Integer.MAX_VALUE bytes
+     */
+    public static DoubleBuffer doubles(long count) {
+        return allocate(count, Double.BYTES).asDoubleBuffer();
+    }
+
+    private static ByteBuffer allocate(long count, int bytes) {
+        if (count < 0 || count * bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A buffer of " + count + " values does not fit into a direct buffer");
+        }
+        return ByteBuffer.allocateDirect((int) (count * bytes)).order(ByteOrder.nativeOrder());
+    }
+}
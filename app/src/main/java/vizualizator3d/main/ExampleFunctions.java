@@ -0,0 +1,46 @@
+package vizualizator3d.main;
+
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Example functions of the viewer with their names;
+ * Kept apart from MyPlotApp, so that they can be evaluated without JavaFX (by BatchExport and the benchmarks)
+ * @author Katarína Osvaldová
+ */
+public final class ExampleFunctions {
+    /**
+     * Example functions
+     */
+    private static final DoubleBinaryOperator function1 = (x, y) -> 2.75/Math.exp(Math.pow(x/3,2)*Math.pow(y/3,2));
+    private static final DoubleBinaryOperator function2 = (x, y) -> Math.sin(Math.sqrt(Math.abs(Math.pow(x, 2)+Math.pow(y, 2))));
+    private static final DoubleBinaryOperator function3 = (x, y) -> 2*Math.sin(Math.sqrt(Math.abs(Math.pow(x/1.5,3)+Math.pow(y/1.5,3))));
+    private static final DoubleBinaryOperator function4 = (x, y) -> -2*x*y*Math.exp(-Math.pow(x/4,2)-Math.pow(y/4,2));
+    private static final DoubleBinaryOperator function5 = (x, y) -> .5*Math.cos(Math.abs(x)+Math.abs(y))*(Math.abs(x)+Math.abs(y));
+    /**
+     * Example time-dependent function, a circular wave travelling outwards
+     */
+    private static final TimeFunction wave = (x, y, t) -> Math.sin(Math.sqrt(Math.pow(x, 2)+Math.pow(y, 2)) - 3*t);
+
+    private ExampleFunctions() {
+    }
+
+    /**
+     * @return function displayed when the viewer starts
+     */
+    public static DoubleBinaryOperator getDefault() {
+        return function1;
+    }
+
+    /**
+     * @return example functions with their names
+     */
+    public static Map<String, DoubleBinaryOperator> getAll() {
+        return Map.of("Function1", function1,
+                      "Function2", function2,
+                      "Function3", function3,
+                      "Function4", function4,
+                      "Function5", function5,
+                      "Wave", wave);
+    }
+}
@@ -0,0 +1,704 @@
+package vizualizator3d.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiler of user-entered expressions of x, y and optionally the time t (e.g. sin(sqrt(x^2+y^2))*exp(-x/4)) to JVM bytecode;
+ * The expression is parsed into a tree, constant subexpressions are folded and the tree is emitted as the body
+ * of applyAsDouble of a hidden class implementing DoubleBinaryOperator, or TimeFunction if it uses t,
+ * so the JIT compiles it like any lambda;
+ * Functions are the static methods of java.lang.Math with the same names, constants are pi and e;
+ * The code is straight-line (no branches), so the class file needs no stack map frames;
+ * The source is split into tokens first (whitespace only separates them, names are case-insensitive), the last
+ * CACHE_SIZE compiled expressions are cached by their tokens (an evicted class is unloaded once its function
+ * is no longer used); Expressions longer than MAX_TOKENS tokens or nested deeper than MAX_DEPTH
+ * are rejected, so neither the parser nor the code generation can overflow the stack
+ * @author Katarína Osvaldová
+ */
+public class ExpressionCompiler {
+    /**
+     * Functions of one and two arguments, named as the methods of java.lang.Math implementing them
+     */
+    private static final Map<String, DoubleUnaryOperator> UNARY_FUNCTIONS = Map.ofEntries(
+            Map.entry("sin", Math::sin), Map.entry("cos", Math::cos), Map.entry("tan", Math::tan),
+            Map.entry("asin", Math::asin), Map.entry("acos", Math::acos), Map.entry("atan", Math::atan),
+            Map.entry("sinh", Math::sinh), Map.entry("cosh", Math::cosh), Map.entry("tanh", Math::tanh),
+            Map.entry("sqrt", Math::sqrt), Map.entry("cbrt", Math::cbrt), Map.entry("exp", Math::exp),
+            Map.entry("log", Math::log), Map.entry("log10", Math::log10), Map.entry("abs", Math::abs),
+            Map.entry("floor", Math::floor), Map.entry("ceil", Math::ceil), Map.entry("signum", Math::signum));
+    private static final Map<String, DoubleBinaryOperator> BINARY_FUNCTIONS = Map.of(
+            "pow", Math::pow, "atan2", Math::atan2, "hypot", Math::hypot, "min", Math::min, "max", Math::max);
+    private static final Map<String, Double> CONSTANTS = Map.of("pi", Math.PI, "e", Math.E);
+    /**
+     * Internal name of the compiled classes, hidden classes must be in the package of the defining lookup
+     */
+    private static final String CLASS_NAME = "vizualizator3d/main/CompiledExpression";
+    /**
+     * Maximal number of tokens of an expression and maximal nesting of its parentheses, signs and exponents
+     */
+    static final int MAX_TOKENS = 5000;
+    static final int MAX_DEPTH = 200;
+    /**
+     * Number of compiled expressions kept in the cache, the least recently used one is evicted beyond it
+     */
+    static final int CACHE_SIZE = 16;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final Map<String, DoubleBinaryOperator> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHE_SIZE, .75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, DoubleBinaryOperator> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Compiles the expression, or returns the cached compilation of an expression with the same tokens
+     * @param source expression of x, y and optionally t
+     * @return function evaluating the expression, a TimeFunction if the expression uses t
+     * @throws IllegalArgumentException if the expression is not valid or cannot be compiled, the message describes the error
+     */
+    public DoubleBinaryOperator compile(String source) {
+        List<Token> tokens = tokenize(source);
+        StringBuilder key = new StringBuilder();
+        for (Token token : tokens) {
+            key.append(token.text).append(' ');
+        }
+        return cache.computeIfAbsent(key.toString(), k -> define(source, tokens));
+    }
+
+    /**
+     * Parses the tokens and defines a new hidden class evaluating them
+     */
+    private DoubleBinaryOperator define(String source, List<Token> tokens) {
+        Parser parser = new Parser(source, tokens);
+        Node expression = parser.parse();
+        try {
+            byte[] bytes = new ClassFile(expression, parser.timeDependent).toBytes();
+            Class<?> compiled = lookup.defineHiddenClass(bytes, true).lookupClass();
+            return (DoubleBinaryOperator) lookup.findConstructor(compiled, MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Compilation of " + source + " failed: " + e, e);
+        }
+    }
+
+    /**
+     * Token of the source: a number, a name (in lower case) or a single other character
+     */
+    private static class Token {
+        private final String text;
+        /**
+         * Index of the first character of the token in the source
+         */
+        private final int position;
+
+        Token(String text, int position) {
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Splits the source into tokens, skipping whitespace between them
+     * @throws IllegalArgumentException if there are more than MAX_TOKENS tokens
+     */
+    private static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            if (Character.isDigit(c) || c == '.') {
+                while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                // exponent, e.g. 1e-3
+                int digit = (i + 1 < source.length() && "+-".indexOf(source.charAt(i + 1)) >= 0) ? i + 2 : i + 1;
+                if (i < source.length() && Character.toLowerCase(source.charAt(i)) == 'e' && digit < source.length()
+                    && Character.isDigit(source.charAt(digit))) {
+                    i = digit;
+                    while (i < source.length() && Character.isDigit(source.charAt(i))) {
+                        i++;
+                    }
+                }
+            } else if (Character.isLetter(c)) {
+                while (i < source.length() && Character.isLetterOrDigit(source.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            if (tokens.size() == MAX_TOKENS) {
+                throw new IllegalArgumentException("Expression longer than " + MAX_TOKENS + " tokens");
+            }
+            tokens.add(new Token(source.substring(start, i).toLowerCase(Locale.ROOT), start));
+        }
+        return tokens;
+    }
+
+    /**
+     * Node of the expression tree
+     */
+    private abstract static class Node {
+        /**
+         * @return true if the value of the node does not depend on x, y and t
+         */
+        boolean isConstant() {
+            return false;
+        }
+
+        /**
+         * @return value of the node, only defined if isConstant (it may be NaN, e.g. for sqrt(-1))
+         */
+        double constant() {
+            throw new IllegalStateException("Not a constant");
+        }
+
+        /**
+         * Emits code leaving the value of the node (a double) on the operand stack
+         */
+        abstract void emit(ClassFile classFile, ByteArrayOutputStream code);
+
+        /**
+         * @return maximal depth of the operand stack (in slots) while evaluating the node
+         */
+        abstract int maxStack();
+    }
+
+    private static class Constant extends Node {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        double constant() {
+            return value;
+        }
+
+        @Override
+        void emit(ClassFile classFile, ByteArrayOutputStream code) {
+            if (Double.doubleToRawLongBits(value) == 0) {
+                code.write(ClassFile.DCONST_0);
+            } else if (value == 1) {
+                code.write(ClassFile.DCONST_1);
+            } else {
+                code.write(ClassFile.LDC2_W);
+                ClassFile.writeShort(code, classFile.doubleConstant(value));
+            }
+        }
+
+        @Override
+        int maxStack() {
+            return 2;
+        }
+    }
+
+    private static class Variable extends Node {
+        /**
+         * Local variable slot of the argument (0 is this, x takes 1 and 2, y takes 3 and 4, t takes 5 and 6)
+         */
+        private final int slot;
+
+        Variable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        void emit(ClassFile classFile, ByteArrayOutputStream code) {
+            // the short forms only exist for the slots 0 to 3
+            if (slot <= 3) {
+                code.write(ClassFile.DLOAD_0 + slot);
+            } else {
+                code.write(ClassFile.DLOAD);
+                code.write(slot);
+            }
+        }
+
+        @Override
+        int maxStack() {
+            return 2;
+        }
+    }
+
+    private static class Negation extends Node {
+        private final Node operand;
+
+        Negation(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        void emit(ClassFile classFile, ByteArrayOutputStream code) {
+            operand.emit(classFile, code);
+            code.write(ClassFile.DNEG);
+        }
+
+        @Override
+        int maxStack() {
+            return operand.maxStack();
+        }
+    }
+
+    /**
+     * Square, emitted as a multiplication of the duplicated operand (x^2 is common and much cheaper than Math.pow)
+     */
+    private static class Square extends Node {
+        private final Node operand;
+
+        Square(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        void emit(ClassFile classFile, ByteArrayOutputStream code) {
+            operand.emit(classFile, code);
+            code.write(ClassFile.DUP2);
+            code.write(ClassFile.DMUL);
+        }
+
+        @Override
+        int maxStack() {
+            return Math.max(operand.maxStack(), 4);
+        }
+    }
+
+    private static class Arithmetic extends Node {
+        private final int opcode;
+        private final Node left, right;
+
+        Arithmetic(int opcode, Node left, Node right) {
+            this.opcode = opcode;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void emit(ClassFile classFile, ByteArrayOutputStream code) {
+            left.emit(classFile, code);
+            right.emit(classFile, code);
+            code.write(opcode);
+        }
+
+        @Override
+        int maxStack() {
+            return Math.max(left.maxStack(), 2 + right.maxStack());
+        }
+    }
+
+    /**
+     * Call of a static method of java.lang.Math
+     */
+    private static class Call extends Node {
+        private final String name;
+        private final Node[] arguments;
+
+        Call(String name, Node... arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        @Override
+        void emit(ClassFile classFile, ByteArrayOutputStream code) {
+            for (Node argument : arguments) {
+                argument.emit(classFile, code);
+            }
+            code.write(ClassFile.INVOKESTATIC);
+            ClassFile.writeShort(code, classFile.methodReference("java/lang/Math", name,
+                                                                 (arguments.length == 1) ? "(D)D" : "(DD)D"));
+        }
+
+        @Override
+        int maxStack() {
+            int stack = 0;
+            for (int i = 0; i < arguments.length; i++) {
+                stack = Math.max(stack, 2 * i + arguments[i].maxStack());
+            }
+            return stack;
+        }
+    }
+
+    /**
+     * Recursive descent parser of the tokens;
+     * expression = term {('+' | '-') term}, term = unary {('*' | '/') unary}, unary = ('-' | '+') unary | power,
+     * power = primary ['^' unary], primary = number | x | y | t | constant | function '(' arguments ')' | '(' expression ')'
+     */
+    private static class Parser {
+        private final String source;
+        private final List<Token> tokens;
+        private int index;
+        /**
+         * Number of unary rules being parsed, every nested parenthesis, sign or exponent passes through one
+         */
+        private int depth;
+        /**
+         * True once the time t was parsed
+         */
+        private boolean timeDependent;
+
+        Parser(String source, List<Token> tokens) {
+            this.source = source;
+            this.tokens = tokens;
+        }
+
+        Node parse() {
+            if (tokens.isEmpty()) {
+                throw new IllegalArgumentException("Empty expression");
+            }
+            Node expression = expression();
+            if (index < tokens.size()) {
+                throw error("Unexpected '" + tokens.get(index).text + "'");
+            }
+            return expression;
+        }
+
+        private Node expression() {
+            Node node = term();
+            while (peek() == '+' || peek() == '-') {
+                int opcode = (next().text.equals("+")) ? ClassFile.DADD : ClassFile.DSUB;
+                node = arithmetic(opcode, node, term());
+            }
+            return node;
+        }
+
+        private Node term() {
+            Node node = unary();
+            while (peek() == '*' || peek() == '/') {
+                int opcode = (next().text.equals("*")) ? ClassFile.DMUL : ClassFile.DDIV;
+                node = arithmetic(opcode, node, unary());
+            }
+            return node;
+        }
+
+        private Node unary() {
+            if (depth == MAX_DEPTH) {
+                throw error("Expression nested deeper than " + MAX_DEPTH + " levels");
+            }
+            depth++;
+            try {
+                if (peek() == '-') {
+                    index++;
+                    Node operand = unary();
+                    return operand.isConstant() ? new Constant(-operand.constant()) : new Negation(operand);
+                }
+                if (peek() == '+') {
+                    index++;
+                    return unary();
+                }
+                return power();
+            } finally {
+                depth--;
+            }
+        }
+
+        private Node power() {
+            Node base = primary();
+            if (peek() != '^') {
+                return base;
+            }
+            index++;
+            Node exponent = unary();
+            if (exponent.isConstant() && exponent.constant() == 2) {
+                return base.isConstant() ? new Constant(base.constant() * base.constant()) : new Square(base);
+            }
+            return call("pow", base, exponent);
+        }
+
+        private Node primary() {
+            char c = peek();
+            if (c == '(') {
+                index++;
+                Node node = expression();
+                expect(')');
+                return node;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return number();
+            }
+            if (!Character.isLetter(c)) {
+                throw error((c == 0) ? "Unexpected end of expression" : "Unexpected '" + tokens.get(index).text + "'");
+            }
+            String name = next().text;
+            if (name.equals("x")) {
+                return new Variable(1);
+            }
+            if (name.equals("y")) {
+                return new Variable(3);
+            }
+            if (name.equals("t")) {
+                timeDependent = true;
+                return new Variable(5);
+            }
+            if (CONSTANTS.containsKey(name)) {
+                return new Constant(CONSTANTS.get(name));
+            }
+            if (!UNARY_FUNCTIONS.containsKey(name) && !BINARY_FUNCTIONS.containsKey(name)) {
+                index--;
+                throw error("Unknown name '" + name + "'");
+            }
+            expect('(');
+            Node first = expression();
+            if (UNARY_FUNCTIONS.containsKey(name)) {
+                expect(')');
+                return call(name, first);
+            }
+            expect(',');
+            Node second = expression();
+            expect(')');
+            return call(name, first, second);
+        }
+
+        private Node number() {
+            try {
+                return new Constant(Double.parseDouble(tokens.get(index).text));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            } finally {
+                index++;
+            }
+        }
+
+        /**
+         * Creates an arithmetic node, folded to a constant if both operands are constant
+         */
+        private static Node arithmetic(int opcode, Node left, Node right) {
+            if (!left.isConstant() || !right.isConstant()) {
+                return new Arithmetic(opcode, left, right);
+            }
+            double a = left.constant();
+            double b = right.constant();
+            switch (opcode) {
+                case ClassFile.DADD:
+                    return new Constant(a + b);
+                case ClassFile.DSUB:
+                    return new Constant(a - b);
+                case ClassFile.DMUL:
+                    return new Constant(a * b);
+                default:
+                    return new Constant(a / b);
+            }
+        }
+
+        /**
+         * Creates a call node, folded to a constant if all arguments are constant
+         */
+        private static Node call(String name, Node... arguments) {
+            for (Node argument : arguments) {
+                if (!argument.isConstant()) {
+                    return new Call(name, arguments);
+                }
+            }
+            double value = (arguments.length == 1)
+                           ? UNARY_FUNCTIONS.get(name).applyAsDouble(arguments[0].constant())
+                           : BINARY_FUNCTIONS.get(name).applyAsDouble(arguments[0].constant(), arguments[1].constant());
+            return new Constant(value);
+        }
+
+        /**
+         * @return first character of the current token, 0 at the end of the tokens
+         */
+        private char peek() {
+            return (index < tokens.size()) ? tokens.get(index).text.charAt(0) : 0;
+        }
+
+        private Token next() {
+            return tokens.get(index++);
+        }
+
+        private void expect(char c) {
+            if (index == tokens.size() || !tokens.get(index).text.equals(String.valueOf(c))) {
+                throw error("Expected '" + c + "'");
+            }
+            index++;
+        }
+
+        /**
+         * @return error at the current token, positions are counted in the source as entered
+         */
+        private IllegalArgumentException error(String message) {
+            int position = (index < tokens.size()) ? tokens.get(index).position : source.length();
+            return new IllegalArgumentException(message + " at position " + (position + 1) + " of " + source);
+        }
+    }
+
+    /**
+     * Writer of the class file of a compiled expression:
+     * a final class with a no-argument constructor and applyAsDouble returning the value of the expression,
+     * applyAsDouble(x, y, t) of TimeFunction for time-dependent expressions (its applyAsDouble(x, y) is inherited)
+     */
+    private static class ClassFile {
+        static final int DCONST_0 = 0x0e, DCONST_1 = 0x0f, LDC2_W = 0x14, DLOAD = 0x18, DLOAD_0 = 0x26, ALOAD_0 = 0x2a;
+        static final int DUP2 = 0x5c, DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+        static final int DRETURN = 0xaf, RETURN = 0xb1, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+        private static final int TAG_UTF8 = 1, TAG_DOUBLE = 6, TAG_CLASS = 7, TAG_METHOD_REFERENCE = 10, TAG_NAME_AND_TYPE = 12;
+        /**
+         * Java 17 class file version
+         */
+        private static final int MAJOR_VERSION = 61;
+        private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+        private final Node expression;
+        private final boolean timeDependent;
+        private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+        /**
+         * Indices of the constants written to the pool, keyed by their tag and value
+         */
+        private final Map<String, Integer> constants = new HashMap<>();
+        private int constantCount = 1;
+
+        ClassFile(Node expression, boolean timeDependent) {
+            this.expression = expression;
+            this.timeDependent = timeDependent;
+        }
+
+        byte[] toBytes() {
+            int thisClass = classConstant(CLASS_NAME);
+            int superClass = classConstant("java/lang/Object");
+            int operatorInterface = classConstant(timeDependent ? "vizualizator3d/main/TimeFunction"
+                                                                : "java/util/function/DoubleBinaryOperator");
+            int codeName = utf8Constant("Code");
+
+            ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+            constructor.write(ALOAD_0);
+            constructor.write(INVOKESPECIAL);
+            writeShort(constructor, methodReference("java/lang/Object", "<init>", "()V"));
+            constructor.write(RETURN);
+
+            ByteArrayOutputStream apply = new ByteArrayOutputStream();
+            expression.emit(this, apply);
+            apply.write(DRETURN);
+
+            // the methods are written first, the constant pool preceding them is complete only afterwards
+            ByteArrayOutputStream methods = new ByteArrayOutputStream();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream methodsOut = new DataOutputStream(methods);
+                 DataOutputStream out = new DataOutputStream(bytes)) {
+                writeMethod(methodsOut, ACC_PUBLIC, "<init>", "()V", codeName, 1, 1, constructor.toByteArray());
+                writeMethod(methodsOut, ACC_PUBLIC, "applyAsDouble", timeDependent ? "(DDD)D" : "(DD)D", codeName,
+                            expression.maxStack(), timeDependent ? 7 : 5, apply.toByteArray());
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(MAJOR_VERSION);
+                out.writeShort(constantCount);
+                constantPool.writeTo(out);
+                out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(operatorInterface);
+                out.writeShort(0);
+                out.writeShort(2);
+                methodsOut.flush();
+                methods.writeTo(out);
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Writes a method with a Code attribute
+         */
+        private void writeMethod(DataOutputStream out, int access, String name, String descriptor, int codeName,
+                                 int maxStack, int maxLocals, byte[] code) throws IOException {
+            int nameIndex = utf8Constant(name);
+            int descriptorIndex = utf8Constant(descriptor);
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        int doubleConstant(double value) {
+            return constant(TAG_DOUBLE + ":" + Double.doubleToRawLongBits(value), 2, out -> out.writeDouble(value));
+        }
+
+        int methodReference(String owner, String name, String descriptor) {
+            int ownerIndex = classConstant(owner);
+            int nameIndex = utf8Constant(name);
+            int descriptorIndex = utf8Constant(descriptor);
+            int nameAndType = constant(TAG_NAME_AND_TYPE + ":" + nameIndex + ":" + descriptorIndex, 1,
+                                       out -> {out.writeShort(nameIndex);
+                                               out.writeShort(descriptorIndex);});
+            return constant(TAG_METHOD_REFERENCE + ":" + ownerIndex + ":" + nameAndType, 1,
+                            out -> {out.writeShort(ownerIndex);
+                                    out.writeShort(nameAndType);});
+        }
+
+        private int classConstant(String internalName) {
+            int nameIndex = utf8Constant(internalName);
+            return constant(TAG_CLASS + ":" + nameIndex, 1, out -> out.writeShort(nameIndex));
+        }
+
+        private int utf8Constant(String value) {
+            return constant(TAG_UTF8 + ":" + value, 1, out -> out.writeUTF(value));
+        }
+
+        /**
+         * Writer of the body of a constant (after its tag)
+         */
+        private interface ConstantBody {
+            void write(DataOutputStream out) throws IOException;
+        }
+
+        /**
+         * Adds the constant to the pool unless it is already there
+         * @param key tag and value of the constant
+         * @param slots number of pool entries the constant takes (2 for doubles)
+         * @return index of the constant in the pool
+         */
+        private int constant(String key, int slots, ConstantBody body) {
+            Integer index = constants.get(key);
+            if (index != null) {
+                return index;
+            }
+            DataOutputStream out = new DataOutputStream(constantPool);
+            try {
+                out.writeByte(Integer.parseInt(key.substring(0, key.indexOf(':'))));
+                body.write(out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = constantCount;
+            constantCount += slots;
+            constants.put(key, index);
+            return index;
+        }
+
+        static void writeShort(ByteArrayOutputStream code, int value) {
+            code.write(value >>> 8);
+            code.write(value);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package vizualizator3d.main;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Coalescing of frequent update requests (e.g. the values of a dragged slider) into at most one update per frame;
+ * Requests between two frames only mark the update as due, the update runs on the next pulse and reads the current
+ * state itself, so intermediate values are dropped; The update may request itself again to be retried on a later frame;
+ * The timer only runs while an update is due
+ * @author Katarína Osvaldová
+ */
+public class FrameCoalescer extends AnimationTimer {
+    private final Runnable update;
+    private boolean due;
+
+    /**
+     * @param update update run on the JavaFX thread, at most once per frame
+     */
+    public FrameCoalescer(Runnable update) {
+        this.update = update;
+    }
+
+    /**
+     * Marks the update as due on the next frame
+     */
+    public void request() {
+        due = true;
+        start();
+    }
+
+    @Override
+    public void handle(long now) {
+        if (!due) {
+            stop();
+            return;
+        }
+        due = false;
+        update.run();
+    }
+}
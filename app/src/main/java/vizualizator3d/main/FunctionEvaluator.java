@@ -0,0 +1,263 @@
+package vizualizator3d.main;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Evaluation service computing function values of a FunctionGrid off the JavaFX thread;
+ * The grid is covered by the tiles of a TileCache, rows of tiles are evaluated (or taken from the cache) in parallel
+ * on a fork-join pool and copied into the values of the grid, min/max of the values are reduced alongside;
+ * Every request supersedes the previous one: tiles of a superseded request stop early and its result is never
+ * published; The finished result is handed to the publisher (e.g. Platform::runLater) in one piece
+ * @author Katarína Osvaldová
+ */
+public class FunctionEvaluator {
+    private final ForkJoinPool pool;
+    private final TileCache cache;
+    private final Executor publisher;
+    /**
+     * Number of the latest request, a request is superseded as soon as this changes
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * Number of requests running on the pool, superseded ones included until they stop
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Evaluated values of a request
+     */
+    public static class Result {
+        private final FunctionGrid grid;
+        private final double[] values;
+        private final double minValue;
+        private final double maxValue;
+        private final int[] evaluatedSamples;
+
+        private Result(FunctionGrid grid, double[] values, double minValue, double maxValue, int[] evaluatedSamples) {
+            this.grid = grid;
+            this.values = values;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.evaluatedSamples = evaluatedSamples;
+        }
+
+        /**
+         * @return grid the values were evaluated for
+         */
+        public FunctionGrid getGrid() {
+            return grid;
+        }
+
+        /**
+         * @return values indexed as the samples of the grid
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        public double getMinValue() {
+            return minValue;
+        }
+
+        public double getMaxValue() {
+            return maxValue;
+        }
+
+        /**
+         * @return indices of the samples the function was actually evaluated at, null if it was evaluated at all of them
+         */
+        public int[] getEvaluatedSamples() {
+            return evaluatedSamples;
+        }
+    }
+
+    /**
+     * @param pool pool evaluating the tiles
+     * @param cache cache of evaluated tiles
+     * @param publisher executor receiving the finished results
+     */
+    public FunctionEvaluator(ForkJoinPool pool, TileCache cache, Executor publisher) {
+        this.pool = pool;
+        this.cache = cache;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Starts evaluation of the function over the grid, superseding any running request
+     * @param grid grid to evaluate
+     * @param function function to evaluate
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     * @param onFinished consumer of the result, called through the publisher unless the request was superseded meanwhile
+     */
+    public void submit(FunctionGrid grid, DoubleBinaryOperator function, double xOffset, double yOffset, double zoom,
+                       Consumer<Result> onFinished) {
+        long request = generation.incrementAndGet();
+        double[] values = new double[grid.size()];
+        TileCache.Lattice lattice = new TileCache.Lattice(grid, xOffset, yOffset);
+        long firstTileRow = Math.floorDiv(lattice.getFirstRow(), TileCache.TILE_SIZE);
+        long lastTileRow = Math.floorDiv(lattice.getFirstRow() + grid.getRows() - 1, TileCache.TILE_SIZE);
+        TileTask root = new TileTask(request, grid, lattice, function, zoom, values, firstTileRow, lastTileRow + 1);
+        running.incrementAndGet();
+        pool.execute(() -> {
+            try {
+                root.invoke();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return;
+            } finally {
+                running.decrementAndGet();
+            }
+            publish(request, new Result(grid, values, root.min, root.max, null), onFinished);
+        });
+    }
+
+    /**
+     * Starts adaptive sampling of the function over the grid, superseding any running request;
+     * The sampling itself is sequential (the quadtree is refined cell by cell), it runs as a single task of the pool
+     * @param grid grid to sample
+     * @param function function to evaluate
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     * @param sampler adaptive sampler to use
+     * @param onFinished consumer of the result, called through the publisher unless the request was superseded meanwhile
+     */
+    public void submitAdaptive(FunctionGrid grid, DoubleBinaryOperator function, double xOffset, double yOffset,
+                               double zoom, AdaptiveSampler sampler, Consumer<Result> onFinished) {
+        long request = generation.incrementAndGet();
+        double[] values = new double[grid.size()];
+        running.incrementAndGet();
+        pool.execute(() -> {
+            AdaptiveSampler.Samples samples;
+            try {
+                samples = sampler.sample(grid, function, xOffset, yOffset, zoom, values,
+                                         () -> generation.get() != request);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return;
+            } finally {
+                running.decrementAndGet();
+            }
+            publish(request, new Result(grid, values, samples.getMinValue(), samples.getMaxValue(),
+                                        samples.getEvaluated()), onFinished);
+        });
+    }
+
+    /**
+     * Hands the result to the publisher, unless its request was superseded
+     */
+    private void publish(long request, Result result, Consumer<Result> onFinished) {
+        if (generation.get() != request) {
+            return;
+        }
+        publisher.execute(() -> {
+            if (generation.get() == request) {
+                onFinished.accept(result);
+            }
+        });
+    }
+
+    /**
+     * @return true if no request (not even a superseded one) is running on the pool
+     */
+    public boolean isIdle() {
+        return running.get() == 0;
+    }
+
+    /**
+     * Cancels the running request, its result will not be published
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Task filling the part of the grid covered by the rows of tiles [fromTileRow, toTileRow), splitting them in halves
+     * down to single rows of tiles
+     */
+    private class TileTask extends RecursiveAction {
+        private final long request;
+        private final FunctionGrid grid;
+        private final TileCache.Lattice lattice;
+        private final DoubleBinaryOperator function;
+        private final double zoom;
+        private final double[] values;
+        private final long fromTileRow, toTileRow;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        TileTask(long request, FunctionGrid grid, TileCache.Lattice lattice, DoubleBinaryOperator function, double zoom,
+                 double[] values, long fromTileRow, long toTileRow) {
+            this.request = request;
+            this.grid = grid;
+            this.lattice = lattice;
+            this.function = function;
+            this.zoom = zoom;
+            this.values = values;
+            this.fromTileRow = fromTileRow;
+            this.toTileRow = toTileRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (generation.get() != request) {
+                return;
+            }
+            if (toTileRow - fromTileRow <= 1) {
+                fillTileRow(fromTileRow);
+                return;
+            }
+            // tile rows may be negative, so no unsigned shift
+            long middle = fromTileRow + (toTileRow - fromTileRow) / 2;
+            TileTask first = new TileTask(request, grid, lattice, function, zoom, values, fromTileRow, middle);
+            TileTask second = new TileTask(request, grid, lattice, function, zoom, values, middle, toTileRow);
+            invokeAll(first, second);
+            min = Math.min(first.min, second.min);
+            max = Math.max(first.max, second.max);
+        }
+
+        /**
+         * Copies the samples of the grid lying in the row of tiles from the cache
+         */
+        private void fillTileRow(long tileRow) {
+            int size = TileCache.TILE_SIZE;
+            int columns = grid.getColumns();
+            long firstColumn = lattice.getFirstColumn();
+            long firstRow = lattice.getFirstRow();
+            // rows and columns of the grid covered by the tiles
+            int fromRow = (int) Math.max(0, tileRow * size - firstRow);
+            int toRow = (int) Math.min(grid.getRows(), (tileRow + 1) * size - firstRow);
+            long firstTileColumn = Math.floorDiv(firstColumn, size);
+            long lastTileColumn = Math.floorDiv(firstColumn + columns - 1, size);
+            for (long tileColumn = firstTileColumn; tileColumn <= lastTileColumn; tileColumn++) {
+                double[] tile = cache.tile(function, lattice, tileColumn, tileRow, () -> generation.get() != request);
+                if (tile == null) {
+                    return;
+                }
+                int fromColumn = (int) Math.max(0, tileColumn * size - firstColumn);
+                int toColumn = (int) Math.min(columns, (tileColumn + 1) * size - firstColumn);
+                for (int row = fromRow; row < toRow; row++) {
+                    int tileIndex = (int) ((firstRow + row - tileRow * size) * size + firstColumn + fromColumn - tileColumn * size);
+                    for (int index = row * columns + fromColumn; index < row * columns + toColumn; index++, tileIndex++) {
+                        double value = tile[tileIndex] * zoom;
+                        values[index] = value;
+                        if (value < min) {
+                            min = value;
+                        }
+                        if (value > max) {
+                            max = value;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
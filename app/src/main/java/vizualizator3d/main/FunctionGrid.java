@@ -0,0 +1,243 @@
+package vizualizator3d.main;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Grid of sampled function values of a plot;
+ * The samples lie on a regular grid of columns (x) and rows (y) with the given resolution,
+ * all per-sample state is held in flat double arrays indexed by row * columns + column,
+ * so evaluation and animation loops run without boxing, hashing or allocation
+ * @author Katarína Osvaldová
+ */
+public class FunctionGrid {
+    private final double xMin;
+    private final double yMin;
+    private final double resolution;
+    private final int columns;
+    private final int rows;
+    /**
+     * Currently displayed heights of the samples (z coordinates), exchanged by swapHeights while a time-dependent function plays
+     */
+    private double[] heights;
+    /**
+     * Heights at the start of the current animated transition and at its end
+     */
+    private final double[] starts;
+    private final double[] targets;
+    /**
+     * min/max of the last evaluated values
+     */
+    private double minValue;
+    private double maxValue;
+
+    /**
+     * Creates a grid covering [xMin, xMin+length] x [yMin, yMin+length] with all heights set to 0
+     * @param xMin lowest x coordinate
+     * @param yMin lowest y coordinate
+     * @param length length of the covered interval on both axes
+     * @param resolution distance between neighbouring samples
+     */
+    public FunctionGrid(double xMin, double yMin, double length, double resolution) {
+        this.xMin = xMin;
+        this.yMin = yMin;
+        this.resolution = resolution;
+        columns = (int) Math.floor(length / resolution + 1e-9) + 1;
+        rows = columns;
+        heights = new double[columns * rows];
+        starts = new double[columns * rows];
+        targets = new double[columns * rows];
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of samples in the grid
+     */
+    public int size() {
+        return heights.length;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @param column column of the grid
+     * @return x coordinate of the column
+     */
+    public double getX(int column) {
+        return xMin + column * resolution;
+    }
+
+    /**
+     * @param row row of the grid
+     * @return y coordinate of the row
+     */
+    public double getY(int row) {
+        return yMin + row * resolution;
+    }
+
+    /**
+     * @return currently displayed heights, indexed by row * columns + column (the array changes with swapHeights)
+     */
+    public double[] getHeights() {
+        return heights;
+    }
+
+    public double getMinValue() {
+        return minValue;
+    }
+
+    public double getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Takes over the heights of another grid (e.g. of a different resolution), each sample gets the height
+     * of the nearest sample of the other grid; starts and targets are set to the same heights
+     * @param other grid to copy the heights from
+     */
+    public void copyHeightsFrom(FunctionGrid other) {
+        for (int row = 0; row < rows; row++) {
+            int otherRow = other.nearestIndex(getY(row) - other.yMin, other.rows);
+            for (int column = 0; column < columns; column++) {
+                int otherColumn = other.nearestIndex(getX(column) - other.xMin, other.columns);
+                heights[row * columns + column] = other.heights[otherRow * other.columns + otherColumn];
+            }
+        }
+        System.arraycopy(heights, 0, starts, 0, heights.length);
+        System.arraycopy(heights, 0, targets, 0, heights.length);
+        minValue = other.minValue;
+        maxValue = other.maxValue;
+    }
+
+    private int nearestIndex(double distance, int count) {
+        return (int) Math.max(0, Math.min(count - 1, Math.round(distance / resolution)));
+    }
+
+    /**
+     * Evaluates the function at every sample and makes the values the new targets of the heights;
+     * The function gets offset coordinates, so that no matter what interval it's displaying, it's always displayed at the same coordinates
+     * @param function function to evaluate
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     */
+    public void evaluate(DoubleBinaryOperator function, double xOffset, double yOffset, double zoom) {
+        double[] values = new double[heights.length];
+        evaluateRows(function, xOffset, yOffset, zoom, values, 0, rows);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        setTargets(values, min, max);
+    }
+
+    /**
+     * Evaluates the function at the samples of the rows [fromRow, toRow) without changing the grid;
+     * Safe to be called concurrently for disjoint ranges of rows
+     * @param function function to evaluate
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     * @param values array receiving the values, indexed as the samples of the grid
+     * @param fromRow first evaluated row
+     * @param toRow first row after the evaluated ones
+     */
+    public void evaluateRows(DoubleBinaryOperator function, double xOffset, double yOffset, double zoom,
+                             double[] values, int fromRow, int toRow) {
+        for (int row = fromRow; row < toRow; row++) {
+            double y = getY(row) - yOffset;
+            int index = row * columns;
+            for (int column = 0; column < columns; column++, index++) {
+                values[index] = function.applyAsDouble(getX(column) - xOffset, y) * zoom;
+            }
+        }
+    }
+
+    /**
+     * Evaluates the time-dependent function at the samples of the rows [fromRow, toRow) at the given time
+     * without changing the grid; Safe to be called concurrently for disjoint ranges of rows
+     * @param function function to evaluate
+     * @param t time passed to the function
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     * @param values array receiving the values, indexed as the samples of the grid
+     * @param fromRow first evaluated row
+     * @param toRow first row after the evaluated ones
+     */
+    public void evaluateRows(TimeFunction function, double t, double xOffset, double yOffset, double zoom,
+                             double[] values, int fromRow, int toRow) {
+        for (int row = fromRow; row < toRow; row++) {
+            double y = getY(row) - yOffset;
+            int index = row * columns;
+            for (int column = 0; column < columns; column++, index++) {
+                values[index] = function.applyAsDouble(getX(column) - xOffset, y, t) * zoom;
+            }
+        }
+    }
+
+    /**
+     * Makes the values the displayed heights without copying them (the arrays are exchanged), starts and targets
+     * are left as they are, a later transition starts from the displayed heights anyway
+     * @param values new heights, indexed as the samples of the grid, owned by the grid afterwards
+     * @param min minimum of the values
+     * @param max maximum of the values
+     * @return array of the previous heights, no longer used by the grid
+     */
+    public double[] swapHeights(double[] values, double min, double max) {
+        double[] previous = heights;
+        heights = values;
+        minValue = min;
+        maxValue = max;
+        return previous;
+    }
+
+    /**
+     * Makes the values the new targets of the heights; the transition starts from the current heights,
+     * so a transition still in progress is redirected instead of being stacked with the new one
+     * @param values new values, indexed as the samples of the grid
+     * @param min minimum of the values
+     * @param max maximum of the values
+     */
+    public void setTargets(double[] values, double min, double max) {
+        System.arraycopy(heights, 0, starts, 0, heights.length);
+        System.arraycopy(values, 0, targets, 0, heights.length);
+        minValue = min;
+        maxValue = max;
+    }
+
+    /**
+     * Multiplies the targets of the heights by the factor, the transition starts from the current heights
+     * @param factor multiplier of the targets
+     */
+    public void zoom(double factor) {
+        System.arraycopy(heights, 0, starts, 0, heights.length);
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] *= factor;
+        }
+    }
+
+    /**
+     * Moves every height to the given point of the transition between its start and its target
+     * @param progress 0 for the start, 1 for the target
+     */
+    public void interpolate(double progress) {
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = starts[i] + (targets[i] - starts[i]) * progress;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package vizualizator3d.main;
+
+import javafx.animation.AnimationTimer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Playback of a time-dependent function (TimeFunction) over a FunctionGrid, re-evaluating the whole grid every frame;
+ * Evaluation is double-buffered: while the JavaFX thread displays the current heights, the heights of the next frame
+ * are evaluated in parallel on a fork-join pool into a back buffer, which is swapped with the displayed heights
+ * on the first frame after it is finished (frames arriving earlier keep the displayed heights);
+ * The frame loop does not allocate: the two buffers and the tree of tasks splitting the rows are created by play
+ * and reinitialized for every frame
+ * @author Katarína Osvaldová
+ */
+public class FunctionPlayer extends AnimationTimer {
+    /**
+     * Number of rows evaluated by a single task
+     */
+    static final int LEAF_ROWS = 8;
+    private final ForkJoinPool pool;
+    private final PlotAnimator.Frame frame;
+    private FunctionGrid grid;
+    private TimeFunction function;
+    private double xOffset;
+    private double yOffset;
+    private double zoom;
+    /**
+     * Buffer the next frame is evaluated into, the other buffer is the grid's heights
+     */
+    private double[] back;
+    /**
+     * Parameters of the evaluated frame, only written while none of the tasks run
+     */
+    private Evaluation evaluation;
+    private RowTask root;
+    private long startTime;
+    private long lastFrame;
+    private boolean restarting;
+    private boolean submitted;
+    private boolean running;
+
+    /**
+     * @param pool pool evaluating the rows
+     * @param frame callback displaying the heights of the grid after every swap (always recolouring)
+     */
+    public FunctionPlayer(ForkJoinPool pool, PlotAnimator.Frame frame) {
+        this.pool = pool;
+        this.frame = frame;
+    }
+
+    /**
+     * Starts playing the function over the grid; A function already playing continues in its time,
+     * so changing the grid or the offsets does not restart it
+     * @param grid grid to evaluate, its heights are replaced every frame
+     * @param function function to play
+     * @param xOffset offset subtracted from x coordinates
+     * @param yOffset offset subtracted from y coordinates
+     * @param zoom multiplier of the values
+     */
+    public void play(FunctionGrid grid, TimeFunction function, double xOffset, double yOffset, double zoom) {
+        restarting |= !running || function != this.function;
+        // tasks still running keep their back buffer and parameters, they are left to them
+        boolean busy = submitted && !root.isDone();
+        if (back == null || back.length != grid.size() || busy) {
+            back = new double[grid.size()];
+        }
+        if (this.grid != grid || busy) {
+            evaluation = new Evaluation();
+            root = new RowTask(evaluation, 0, grid.getRows());
+        }
+        this.grid = grid;
+        this.function = function;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+        this.zoom = zoom;
+        submitted = false;
+        running = true;
+        start();
+    }
+
+    /**
+     * Changes the multiplier of the values from the next evaluated frame on
+     * @param zoom multiplier of the values
+     */
+    public void setZoom(double zoom) {
+        this.zoom = zoom;
+    }
+
+    /**
+     * @return true while a function is playing
+     */
+    public boolean isPlaying() {
+        return running;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        super.stop();
+    }
+
+    @Override
+    public void handle(long now) {
+        if (restarting) {
+            restarting = false;
+            startTime = now;
+            lastFrame = now;
+        }
+        long framePeriod = now - lastFrame;
+        lastFrame = now;
+        boolean swapped = false;
+        if (submitted) {
+            if (!root.isDone()) {
+                return;
+            }
+            if (root.isCompletedAbnormally()) {
+                root.getException().printStackTrace();
+                stop();
+                return;
+            }
+            back = grid.swapHeights(back, root.min, root.max);
+            swapped = true;
+        }
+        // the next frame is expected one frame period later
+        submit(now + framePeriod);
+        if (swapped) {
+            frame.render(true);
+        }
+    }
+
+    /**
+     * Starts evaluation of the back buffer for the frame displayed at the given time
+     */
+    private void submit(long frameTime) {
+        evaluation.grid = grid;
+        evaluation.function = function;
+        evaluation.time = (frameTime - startTime) / 1e9;
+        evaluation.xOffset = xOffset;
+        evaluation.yOffset = yOffset;
+        evaluation.zoom = zoom;
+        evaluation.values = back;
+        root.reinitialize();
+        pool.execute(root);
+        submitted = true;
+    }
+
+    /**
+     * Parameters of a frame shared by a tree of tasks
+     */
+    private static class Evaluation {
+        private FunctionGrid grid;
+        private TimeFunction function;
+        private double time;
+        private double xOffset;
+        private double yOffset;
+        private double zoom;
+        private double[] values;
+    }
+
+    /**
+     * Task evaluating the rows [fromRow, toRow) into the back buffer, its subtasks are created once and reused every frame
+     */
+    private static class RowTask extends RecursiveAction {
+        private final Evaluation evaluation;
+        private final int fromRow, toRow;
+        private final RowTask first, second;
+        private double min;
+        private double max;
+
+        RowTask(Evaluation evaluation, int fromRow, int toRow) {
+            this.evaluation = evaluation;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            if (toRow - fromRow > LEAF_ROWS) {
+                int middle = (fromRow + toRow) >>> 1;
+                first = new RowTask(evaluation, fromRow, middle);
+                second = new RowTask(evaluation, middle, toRow);
+            } else {
+                first = null;
+                second = null;
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (first == null) {
+                Evaluation e = evaluation;
+                double[] values = e.values;
+                e.grid.evaluateRows(e.function, e.time, e.xOffset, e.yOffset, e.zoom, values, fromRow, toRow);
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+                int columns = e.grid.getColumns();
+                for (int index = fromRow * columns; index < toRow * columns; index++) {
+                    if (values[index] < min) {
+                        min = values[index];
+                    }
+                    if (values[index] > max) {
+                        max = values[index];
+                    }
+                }
+                return;
+            }
+            first.reinitialize();
+            second.reinitialize();
+            invokeAll(first, second);
+            min = Math.min(first.min, second.min);
+            max = Math.max(first.max, second.max);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package vizualizator3d.main;
+
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Surface displaying a FunctionGrid as a single TriangleMesh;
+ * Every sample is one vertex, every grid cell two triangles; Heights are updated in place in the mesh's points array,
+ * colour comes from a 1D diffuse texture (the colours of a ColourPalette) sampled through per-vertex texture coordinates
+ * @author Katarína Osvaldová
+ */
+public class HeightfieldMesh {
+    private final FunctionGrid grid;
+    private final ColourPalette palette;
+    private final TriangleMesh mesh = new TriangleMesh();
+    private final MeshView view = new MeshView(mesh);
+    private final WritableImage texture;
+    /**
+     * Local copies of the mesh's points and texture coordinates, written back in bulk
+     */
+    private final float[] points;
+    private final float[] texCoords;
+
+    /**
+     * Creates a flat surface over the grid
+     * @param grid grid to display
+     * @param palette palette providing the colours
+     * @param spread multiplier of x and y coordinates
+     */
+    public HeightfieldMesh(FunctionGrid grid, ColourPalette palette, double spread) {
+        this.grid = grid;
+        this.palette = palette;
+        texture = new WritableImage(palette.size(), 1);
+        updateColours();
+        int columns = grid.getColumns();
+        int rows = grid.getRows();
+        points = new float[3 * grid.size()];
+        texCoords = new float[2 * grid.size()];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int index = row * columns + column;
+                points[3 * index] = (float) (grid.getX(column) * spread);
+                points[3 * index + 1] = (float) (grid.getY(row) * spread);
+                texCoords[2 * index + 1] = .5f;
+            }
+        }
+
+        int[] faces = new int[12 * (columns - 1) * (rows - 1)];
+        int f = 0;
+        for (int row = 0; row < rows - 1; row++) {
+            for (int column = 0; column < columns - 1; column++) {
+                int corner = row * columns + column;
+                int[] triangles = {corner, corner + 1, corner + columns + 1,
+                                   corner, corner + columns + 1, corner + columns};
+                for (int vertex : triangles) {
+                    // every vertex has its own texture coordinate with the same index
+                    faces[f++] = vertex;
+                    faces[f++] = vertex;
+                }
+            }
+        }
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(texCoords);
+        mesh.getFaces().setAll(faces);
+
+        PhongMaterial material = new PhongMaterial(Color.WHITE);
+        material.setDiffuseMap(texture);
+        view.setMaterial(material);
+        view.setCullFace(CullFace.NONE);
+    }
+
+    /**
+     * @return node displaying the surface
+     */
+    public MeshView getView() {
+        return view;
+    }
+
+    /**
+     * Copies the colours of the palette into the texture
+     */
+    public void updateColours() {
+        PixelWriter writer = texture.getPixelWriter();
+        for (int i = 0; i < palette.size(); i++) {
+            writer.setArgb(i, 0, palette.getArgb(i));
+        }
+    }
+
+    /**
+     * Moves the vertices to the heights of the grid and optionally updates their colours
+     * @param recolour true if the texture coordinates are to be updated
+     * @param fraction mapping of a height to its position in the gradient, <0, 1>
+     */
+    public void update(boolean recolour, DoubleUnaryOperator fraction) {
+        double[] heights = grid.getHeights();
+        for (int i = 0; i < heights.length; i++) {
+            points[3 * i + 2] = (float) heights[i];
+        }
+        mesh.getPoints().set(0, points, 0, points.length);
+        if (recolour) {
+            for (int i = 0; i < heights.length; i++) {
+                // centre of the texel of the colour
+                texCoords[2 * i] = (palette.bucket(fraction.applyAsDouble(heights[i])) + .5f) / palette.size();
+            }
+            mesh.getTexCoords().set(0, texCoords, 0, texCoords.length);
+        }
+    }
+}
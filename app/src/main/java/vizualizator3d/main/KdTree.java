@@ -0,0 +1,363 @@
+package vizualizator3d.main;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * K-d tree over points used for picking the point under the mouse (see pick);
+ * The tree is implicit: the points are reordered so that a node owning the range [start, end) has its splitting point
+ * in the middle of the range, the points before it are not above and the points after it not below it along
+ * the splitting axis (the longest side of the node's box); Ranges of at most LEAF_SIZE points are leaves;
+ * The subtrees are built in parallel on a fork-join pool down to PARALLEL_SIZE points;
+ * Coordinates, original indices and splitting axes are kept in direct buffers, off the heap (17 bytes per point)
+ * @author Katarína Osvaldová
+ */
+public class KdTree {
+    /**
+     * Maximal number of points of a leaf
+     */
+    static final int LEAF_SIZE = 8;
+    /**
+     * Size of the subtrees built by a single task
+     */
+    static final int PARALLEL_SIZE = 1 << 15;
+    private final FloatBuffer coordinates;
+    private final IntBuffer indices;
+    private final ByteBuffer axes;
+    private final int pointCount;
+    /**
+     * Bounding box of all points, min x, y, z and max x, y, z
+     */
+    private final float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                                    -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+
+    /**
+     * Builds the tree over the points, reordering their coordinates in place
+     * @param coordinates packed x, y, z coordinates of the points (finite), owned by the tree afterwards
+     * @param pointCount number of points
+     * @param pool pool building the subtrees
+     */
+    public KdTree(FloatBuffer coordinates, int pointCount, ForkJoinPool pool) {
+        this.coordinates = coordinates;
+        this.pointCount = pointCount;
+        indices = DirectBuffers.ints(pointCount);
+        axes = ByteBuffer.allocateDirect(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            indices.put(i, i);
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[axis] = Math.min(bounds[axis], coordinates.get(3 * i + axis));
+                bounds[axis + 3] = Math.max(bounds[axis + 3], coordinates.get(3 * i + axis));
+            }
+        }
+        pool.invoke(new BuildTask(0, pointCount, bounds.clone()));
+    }
+
+    /**
+     * Creates a tree over the given points of a grid
+     * @param grid grid of the points
+     * @param heights z coordinates of the samples, indexed as the samples of the grid
+     * @param spread multiplier of x and y coordinates
+     * @param pool pool building the subtrees
+     * @return tree over the samples with finite heights, indexed by the samples
+     */
+    public static KdTree ofGrid(FunctionGrid grid, double[] heights, double spread, ForkJoinPool pool) {
+        return ofGrid(grid, heights, null, spread, pool);
+    }
+
+    /**
+     * Creates a tree over some of the given points of a grid
+     * @param grid grid of the points
+     * @param heights z coordinates of the samples, indexed as the samples of the grid
+     * @param included indices of the samples to put in the tree (e.g. the evaluated samples of an adaptive
+     *                 evaluation), null for all samples
+     * @param spread multiplier of x and y coordinates
+     * @param pool pool building the subtrees
+     * @return tree over the included samples with finite heights, indexed by the samples
+     */
+    public static KdTree ofGrid(FunctionGrid grid, double[] heights, int[] included, double spread,
+                                ForkJoinPool pool) {
+        int columns = grid.getColumns();
+        int candidates = (included == null) ? heights.length : included.length;
+        int count = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (Double.isFinite(heights[(included == null) ? i : included[i]])) {
+                count++;
+            }
+        }
+        FloatBuffer coordinates = DirectBuffers.floats(3L * count);
+        int[] samples = new int[count];
+        int p = 0;
+        for (int i = 0; i < candidates; i++) {
+            int sample = (included == null) ? i : included[i];
+            if (Double.isFinite(heights[sample])) {
+                coordinates.put(3 * p, (float) (grid.getX(sample % columns) * spread));
+                coordinates.put(3 * p + 1, (float) (grid.getY(sample / columns) * spread));
+                coordinates.put(3 * p + 2, (float) heights[sample]);
+                samples[p++] = sample;
+            }
+        }
+        KdTree tree = new KdTree(coordinates, count, pool);
+        for (int i = 0; i < count; i++) {
+            tree.indices.put(i, samples[tree.indices.get(i)]);
+        }
+        return tree;
+    }
+
+    /**
+     * Task building the subtree of the range [start, end), splitting it into tasks down to PARALLEL_SIZE points
+     */
+    private class BuildTask extends RecursiveAction {
+        private final int start, end;
+        private final float[] box;
+
+        BuildTask(int start, int end, float[] box) {
+            this.start = start;
+            this.end = end;
+            this.box = box;
+        }
+
+        @Override
+        protected void compute() {
+            build(start, end, box);
+        }
+    }
+
+    /**
+     * Builds the subtree of the range [start, end) within the box
+     */
+    private void build(int start, int end, float[] box) {
+        if (end - start <= LEAF_SIZE) {
+            return;
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (box[a + 3] - box[a] > box[axis + 3] - box[axis]) {
+                axis = a;
+            }
+        }
+        int middle = (start + end) >>> 1;
+        select(start, end, middle, axis);
+        axes.put(middle, (byte) axis);
+        float split = coordinates.get(3 * middle + axis);
+        float[] lower = box.clone();
+        lower[axis + 3] = split;
+        float[] upper = box.clone();
+        upper[axis] = split;
+        if (end - start > PARALLEL_SIZE) {
+            RecursiveAction.invokeAll(new BuildTask(start, middle, lower), new BuildTask(middle + 1, end, upper));
+        } else {
+            build(start, middle, lower);
+            build(middle + 1, end, upper);
+        }
+    }
+
+    /**
+     * Reorders the range [start, end), so that the point at k is the one that would be there if the range were sorted
+     * along the axis (quickselect)
+     */
+    private void select(int start, int end, int k, int axis) {
+        int low = start;
+        int high = end - 1;
+        while (high > low) {
+            float pivot = coordinates.get(3 * ((low + high) >>> 1) + axis);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (coordinates.get(3 * i + axis) < pivot) {
+                    i++;
+                }
+                while (coordinates.get(3 * j + axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        for (int axis = 0; axis < 3; axis++) {
+            float coordinate = coordinates.get(3 * i + axis);
+            coordinates.put(3 * i + axis, coordinates.get(3 * j + axis));
+            coordinates.put(3 * j + axis, coordinate);
+        }
+        int index = indices.get(i);
+        indices.put(i, indices.get(j));
+        indices.put(j, index);
+    }
+
+    /**
+     * Finds the first point hit by a ray, the points being spheres of the given radius;
+     * A point whose sphere contains the origin of the ray is hit right at the origin (at distance 0), so it is picked
+     * rather than skipped, and points behind the origin are never hit
+     * @param originX x coordinate of the origin of the ray
+     * @param originY y coordinate of the origin of the ray
+     * @param originZ z coordinate of the origin of the ray
+     * @param directionX x coordinate of the direction of the ray
+     * @param directionY y coordinate of the direction of the ray
+     * @param directionZ z coordinate of the direction of the ray
+     * @param radius radius of the points
+     * @return position of the hit point in the tree (see getX, getIndex), -1 if the ray misses all points
+     */
+    public int pick(double originX, double originY, double originZ, double directionX, double directionY,
+                    double directionZ, double radius) {
+        double length = Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+        if (pointCount == 0 || length == 0) {
+            return -1;
+        }
+        Ray ray = new Ray(new double[]{originX, originY, originZ},
+                          new double[]{directionX / length, directionY / length, directionZ / length}, radius);
+        double[] box = new double[6];
+        for (int i = 0; i < 6; i++) {
+            box[i] = bounds[i];
+        }
+        pick(ray, 0, pointCount, box);
+        return ray.hit;
+    }
+
+    /**
+     * Ray of a pick and the first point it hit so far
+     */
+    private static class Ray {
+        private final double[] origin;
+        private final double[] direction;
+        private final double radius;
+        private double distance = Double.POSITIVE_INFINITY;
+        private int hit = -1;
+
+        Ray(double[] origin, double[] direction, double radius) {
+            this.origin = origin;
+            this.direction = direction;
+            this.radius = radius;
+        }
+    }
+
+    /**
+     * Picks within the subtree of the range [start, end), nearer subtrees first; Subtrees whose box (grown by the radius)
+     * the ray misses or enters behind the current hit are skipped
+     * @param box bounds of the subtree, changed during the call and restored before it returns
+     */
+    private void pick(Ray ray, int start, int end, double[] box) {
+        if (start >= end || entry(ray, box) >= ray.distance) {
+            return;
+        }
+        if (end - start <= LEAF_SIZE) {
+            for (int i = start; i < end; i++) {
+                hit(ray, i);
+            }
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        hit(ray, middle);
+        int axis = axes.get(middle);
+        double split = coordinates.get(3 * middle + axis);
+        boolean lowerFirst = ray.origin[axis] < split;
+        for (int side = 0; side < 2; side++) {
+            boolean lower = (side == 0) == lowerFirst;
+            int bound = lower ? axis + 3 : axis;
+            double saved = box[bound];
+            box[bound] = split;
+            if (lower) {
+                pick(ray, start, middle, box);
+            } else {
+                pick(ray, middle + 1, end, box);
+            }
+            box[bound] = saved;
+        }
+    }
+
+    /**
+     * @return distance along the ray at which it enters the box grown by the radius, infinity if it misses it
+     */
+    private static double entry(Ray ray, double[] box) {
+        double enter = 0;
+        double exit = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            double low = box[axis] - ray.radius - ray.origin[axis];
+            double high = box[axis + 3] + ray.radius - ray.origin[axis];
+            double direction = ray.direction[axis];
+            if (direction == 0) {
+                if (low > 0 || high < 0) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                continue;
+            }
+            double t1 = low / direction;
+            double t2 = high / direction;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        return (enter <= exit) ? enter : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Records the point at the position if the ray hits it before the current hit, a sphere containing the origin
+     * is hit at the origin
+     */
+    private void hit(Ray ray, int position) {
+        double dx = coordinates.get(3 * position) - ray.origin[0];
+        double dy = coordinates.get(3 * position + 1) - ray.origin[1];
+        double dz = coordinates.get(3 * position + 2) - ray.origin[2];
+        double along = dx * ray.direction[0] + dy * ray.direction[1] + dz * ray.direction[2];
+        double across = dx * dx + dy * dy + dz * dz - along * along;
+        double radius = ray.radius;
+        if (across > radius * radius) {
+            return;
+        }
+        double halfChord = Math.sqrt(radius * radius - across);
+        if (along + halfChord < 0) {
+            // the whole sphere is behind the origin
+            return;
+        }
+        double distance = Math.max(0, along - halfChord);
+        if (distance < ray.distance) {
+            ray.distance = distance;
+            ray.hit = position;
+        }
+    }
+
+    /**
+     * @return number of points
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public float getX(int position) {
+        return coordinates.get(3 * position);
+    }
+
+    public float getY(int position) {
+        return coordinates.get(3 * position + 1);
+    }
+
+    public float getZ(int position) {
+        return coordinates.get(3 * position + 2);
+    }
+
+    /**
+     * @param position position of a point in the tree
+     * @return index of the point in the coordinates the tree was built from (the sample for trees of grids)
+     */
+    public int getIndex(int position) {
+        return indices.get(position);
+    }
+
+    /**
+     * @return memory taken by the tree (off the heap)
+     */
+    public long getByteSize() {
+        return 17L * pointCount;
+    }
+}
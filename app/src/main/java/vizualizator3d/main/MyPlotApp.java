@@ -0,0 +1,1282 @@
+package vizualizator3d.main;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Insets;
+import javafx.geometry.Point3D;
+import javafx.geometry.Pos;
+import javafx.scene.*;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ColorPicker;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Box;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.Sphere;
+import javafx.scene.text.Text;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+import javafx.stage.Stage;
+import java.io.File;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * JavaFX 3D plot visualisation application
+ * @author Katarína Osvaldová
+ */
+public class MyPlotApp extends Application {
+    /**
+     * Map of example functions with their names
+     */
+    Map<String, DoubleBinaryOperator> functionMap = new TreeMap<>(ExampleFunctions.getAll());
+    /**
+     * Map of point-clouds with their names
+     */
+    Map<String, String> cloudMap = new HashMap<>(Map.of("Rabbit", "rabbit.xyz",
+                                                        "Turtle Shell", "turtle.xyz",
+                                                        "Benchy", "benchy.xyz",
+                                                        "Sphere", "sphere.xyz",
+                                                        "Teapot", "teapot.xyz",
+                                                        "Helix", "helix.xyz"));
+    /**
+     * Main graphic area
+     */
+    private final Group group = new Group();
+    private final SubScene scene = new SubScene(group, 1100, 700, true, SceneAntialiasing.BALANCED);
+    private final BorderPane layout = new BorderPane();
+    private final Scene root = new Scene(layout, 1280, 720);
+    private AmbientLight ambientLight;
+    private ColorPicker minColourPicker;
+    /**
+     * UI objects
+     */
+    private final VBox rightPanel = new VBox();
+    private final VBox leftPanel = new VBox();
+    private final HBox UIPanel = new HBox(leftPanel, rightPanel);
+    private ColorPicker maxColourPicker;
+    private Slider resolutionSlider;
+    private Slider xMinPrecisionSlider;
+    private Slider yMinPrecisionSlider;
+    private Slider xMinSlider;
+    private Slider yMinSlider;
+    private Slider zUnitSlider;
+    /**
+     * Multiplier for coordinates, allowing visual tweaking
+     */
+    private final int spread = 2;
+    /**
+     * Default radius of displayed spheres
+     */
+    private final double valueBallRadius = .1;
+    /**
+     * Grid of sampled values (heights and their changes for animated transition) and the value-spheres displaying them
+     */
+    private FunctionGrid functionGrid;
+    private ValueSpheres valueSpheres = ValueSpheres.NONE;
+    /**
+     * Pool the value-spheres are taken from, so that they are kept across rebuilds of the plot
+     */
+    private final SpherePool spherePool = new SpherePool(valueBallRadius);
+    /**
+     * Axes, created once and reused by every plot
+     */
+    private final List<Box> axes = new ArrayList<>();
+    /**
+     * Surface displaying functionGrid in surface mode (kept while the grid stays the same), the mode is chosen by surfaceModeCheckBox
+     */
+    private HeightfieldMesh heightfield;
+    private CheckBox surfaceModeCheckBox;
+    /**
+     * Contour lines of the plotted values, enabled by contourCheckBox; The levels are entered into contourLevelsField
+     * in function units, or chosen automatically (about contourLevelCount round values between minValue and maxValue);
+     * Lines are extracted from the values of the last evaluation and only re-extracted in the tiles where those values changed
+     */
+    private final int contourLevelCount = 10;
+    private final ContourExtractor contourExtractor = new ContourExtractor(ForkJoinPool.commonPool());
+    private final ContourMesh contours = new ContourMesh();
+    private CheckBox contourCheckBox;
+    private TextField contourLevelsField;
+    private final Text contourLevelsError = new Text();
+    /**
+     * Values of the last displayed evaluation: evaluatedValues of evaluatedGrid multiplied by evaluatedZoom,
+     * evaluated with the offsets evaluatedXOffset and evaluatedYOffset, and their min/max-values in function units;
+     * evaluatedSamples are the samples an adaptive evaluation actually evaluated, null if it evaluated all of them
+     */
+    private FunctionGrid evaluatedGrid;
+    private double[] evaluatedValues;
+    private int[] evaluatedSamples;
+    private double evaluatedZoom = 1;
+    private double evaluatedXOffset;
+    private double evaluatedYOffset;
+    private double evaluatedMinValue;
+    private double evaluatedMaxValue;
+    /**
+     * K-d tree over the displayed points picking the point under the mouse, described in pickInfo;
+     * The tree of a point-cloud comes with its geometry, the tree of a plot is built in the background on the first
+     * mouse move after the values or the zoom changed (pickTreeStale); Points are picked as spheres of pickRadius
+     */
+    private final double pickRadius = .3;
+    private KdTree pickTree;
+    private boolean pickTreeStale;
+    private long pickTreeGeneration;
+    private double mouseX, mouseY;
+    private final Text pickInfo = new Text();
+    /**
+     * Parameters of adaptive sampling of plots, enabled by adaptiveCheckBox;
+     * Only the samples chosen by the sampler are evaluated and displayed as value-spheres
+     */
+    private final double adaptiveCurvatureTolerance = .05;
+    private final double adaptiveDeltaTolerance = 1;
+    private final int adaptivePointBudget = 10000;
+    private final AdaptiveSampler adaptiveSampler = new AdaptiveSampler(adaptiveCurvatureTolerance,
+                                                                        adaptiveDeltaTolerance,
+                                                                        adaptivePointBudget);
+    private CheckBox adaptiveCheckBox;
+    /**
+     * Compiler of functions entered by the user into expressionField, errors of the expression are shown in expressionError
+     */
+    private final ExpressionCompiler expressionCompiler = new ExpressionCompiler();
+    private TextField expressionField;
+    private final Text expressionError = new Text();
+    /**
+     * Palette of materials shared by value-spheres and point-clouds
+     * The palette contains paletteSize colours linearly interpolated between min/max-Colours
+     */
+    private final int paletteSize = ColourPalette.DEFAULT_SIZE;
+    private ColourPalette palette;
+    /**
+     * Parameters and default values for UI control elements -> colourPickers
+     */
+    private final Color defaultMinColour = Color.LAWNGREEN;
+    private final Color defaultMaxColour = Color.ORANGERED;
+    /**
+     * Parameters and default values for UI control elements -> x/y-limits
+     */
+    private final double defaultLowerLimit = -10;
+    private final double minLimit = -500;
+    private final double maxLimit = 500;
+    private final double length = 20;
+    /**
+     * Parameters and default values for UI control elements -> resolution of plots (interval between values on x and y axes)
+     */
+    private final double maxResolution = .55;
+    private final double minResolution = .05;
+    private final double minorResolutionTicks = .01;
+    private final double majorResolutionTicks = .1;
+    private final double defaultResolution = .15;
+    /**
+     * Parameters and default values for UI control elements -> z axis zoom
+     */
+    private final double minZUnit = -2;
+    private final double maxZUnit = 2;
+    private final double defaultZUnit = 0;
+    private double currentZoom = Math.pow(10, defaultZUnit);
+    /**
+     * Offsets of the sliders the displayed plot was last evaluated for (evaluated with them aligned to the lattice
+     * of the value cache, see TileCache.Lattice.align)
+     */
+    private double plottedXOffset;
+    private double plottedYOffset;
+    private double anchorX, anchorY, anchorAngleX, anchorAngleY;
+    /**
+     * Duration of transition animation for value changes
+     */
+    private final double animationDuration = 2;
+    /**
+     * Time-based animation of transitions, renders every frame through animationStep
+     */
+    private final PlotAnimator animator = new PlotAnimator(animationDuration, this::animationStep);
+    /**
+     * Playback of time-dependent functions, re-evaluates the grid every frame and renders it through playbackStep
+     */
+    private final FunctionPlayer functionPlayer = new FunctionPlayer(ForkJoinPool.commonPool(), this::playbackStep);
+    /**
+     * Applies the values of the offset, zoom and resolution sliders while they change, at most once per frame
+     */
+    private final FrameCoalescer sliderUpdates = new FrameCoalescer(this::applySliders);
+    /**
+     * getInterpolationFraction as a reusable object, so that animation frames do not allocate it
+     */
+    private final DoubleUnaryOperator interpolationFraction = this::getInterpolationFraction;
+    /**
+     * Overlay with performance figures over the graphic area, toggled by performanceCheckBox
+     */
+    private final PerformanceHud performanceHud = new PerformanceHud(this::getNodeCount, this::getDisplayedPointCount);
+    /**
+     * JFR events of the steps run every frame, reused (on the JavaFX thread only) so that frames allocate nothing
+     */
+    private final PerformanceEvents.AnimationStep animationStepEvent = new PerformanceEvents.AnimationStep();
+    private final PerformanceEvents.Recolour recolourEvent = new PerformanceEvents.Recolour();
+    private final StackPane graphicArea = new StackPane(scene, performanceHud.getView());
+    private CheckBox performanceCheckBox;
+    /**
+     * min/max-values of currently displayed values used mainly for colour interpolation
+     */
+    private double minValue = 0;
+    private double maxValue = 0;
+    /**
+     * minValue - maxValue
+     */
+    private double minMaxDifference;
+    /**
+     * Currently displayed function
+     */
+    DoubleBinaryOperator currentFunction;
+    /**
+     * Logical value, true if a point-cloud is displayed, false if a plot is displayed
+     */
+    boolean displayingXYZ;
+    /**
+     * Boundaries for scrolling
+     */
+    private final double maxDistance = 300;
+    private final double minDistance = -70;
+    /**
+     * Cache of evaluated function values shared by all plotted windows, so panning only evaluates newly exposed tiles
+     */
+    private final long valueCacheBytes = 64L << 20;
+    private final TileCache valueCache = new TileCache(valueCacheBytes);
+    /**
+     * Service evaluating function values off the JavaFX thread
+     */
+    private final FunctionEvaluator evaluator = new FunctionEvaluator(ForkJoinPool.commonPool(), valueCache, Platform::runLater);
+    /**
+     * Camera of the main graphic area
+     */
+    private PerspectiveCamera camera;
+    /**
+     * Geometry of the displayed point-cloud (its octree), the meshes currently displaying it, the octree nodes they were
+     * built from and the number of points in them; The meshes are kept in the geometry, so they are cached with it
+     */
+    private CloudCache.Geometry cloudGeometry;
+    private List<MeshView> cloudMeshes = new ArrayList<>();
+    private List<Octree.Node> cloudNodes = new ArrayList<>();
+    private int cloudPointCount;
+    /**
+     * Cache of loaded point-clouds and their geometry, its size in MB can be set by the system property
+     * vizualizator3d.cloudCacheMB (a quarter of the maximal heap by default)
+     */
+    private final long cloudCacheBytes = Long.getLong("vizualizator3d.cloudCacheMB", Runtime.getRuntime().maxMemory() / 4 >> 20) << 20;
+    private final CloudCache cloudCache = new CloudCache(cloudCacheBytes);
+    /**
+     * Service loading point-clouds in the background, the progress of a load is shown by loadProgressBar;
+     * While a cloud is loading, the points read so far are displayed in cloudPreview (within the point budget),
+     * its transforms normalize them by their bounds cloudPreviewMin/Max
+     */
+    private final CloudLoader cloudLoader = new CloudLoader(cloudCache, Platform::runLater);
+    private ProgressBar loadProgressBar;
+    private final Group cloudPreview = new Group();
+    private final Scale cloudPreviewScale = new Scale();
+    private final Translate cloudPreviewTranslate = new Translate();
+    private final float[] cloudPreviewMin = new float[3];
+    private final float[] cloudPreviewMax = new float[3];
+    /**
+     * Parameters and default values for UI control elements -> point budget of point-clouds (in thousands of points)
+     */
+    private final double minPointBudget = 50;
+    private final double maxPointBudget = 2000;
+    private final double defaultPointBudget = 1000;
+    private Slider pointBudgetSlider;
+    /**
+     * Voxel-grid downsampling of loaded point-clouds, enabled by downsampleCheckBox; The voxel size is given in per mille
+     * of the largest side of the cloud, 0 = the voxel size retaining at most the point budget; cloudInfo shows
+     * the number of retained points of displayedCloud
+     */
+    private CheckBox downsampleCheckBox;
+    private final double maxVoxelSize = 20;
+    private Slider voxelSizeSlider;
+    private final Text cloudInfo = new Text();
+    private String displayedCloud;
+
+    /**
+     * Starts the application;
+     * -> creates UI sidebar;
+     * -> creates and positions the camera;
+     * -> sets up the main scene for the actual plotting;
+     * -> add light to the scene;
+     * -> creates colours for value-spheres;
+     * -> initializes mouse controls;
+     * -> creates blank plot;
+     * -> displays the default example function;
+     * @param primaryStage primaryStage of the application
+     */
+    @Override
+    public void start(Stage primaryStage) {
+        StackPane.setAlignment(performanceHud.getView(), Pos.TOP_LEFT);
+        layout.setCenter(graphicArea);
+        layout.setLeft(UIPanel);
+
+        camera = new PerspectiveCamera(true);
+        camera.getTransforms().add(new Rotate(-100, Rotate.X_AXIS));
+        camera.setTranslateY(-85);
+        camera.setTranslateZ(15);
+        camera.setTranslateX(5);
+        camera.setFarClip(maxDistance + 100);
+        scene.setCamera(camera);
+
+        scene.setFill(Color.GHOSTWHITE);
+        scene.widthProperty().bind(root.widthProperty());
+        scene.heightProperty().bind(root.heightProperty().subtract(rightPanel.getMinHeight()));
+
+        ambientLight = new AmbientLight(Color.WHITE);
+        group.getChildren().add(ambientLight);
+
+        prepareControlPanel();
+        palette = new ColourPalette(paletteSize, maxColourPicker.getValue(), minColourPicker.getValue());
+        initiateMouseControl(group, scene);
+        initialDisplay();
+        changeFunction(ExampleFunctions.getDefault());
+        List<Path> clouds = new ArrayList<>();
+        for (String filename : cloudMap.values()) {
+            clouds.add(new File(filename).toPath());
+        }
+        cloudLoader.prefetch(clouds, 10 * spread, getCloudReduction());
+
+        primaryStage.setScene(root);
+        primaryStage.show();
+        primaryStage.setTitle("3D plots!");
+    }
+
+    /**
+     * If a plot has not been displayed, this method cleans the stage, displays axes and value-spheres
+     */
+    private void initialDisplay()  {
+        cloudLoader.cancel();
+        loadProgressBar.setVisible(false);
+        cloudInfo.setText("");
+        group.getChildren().clear();
+        group.getChildren().add(ambientLight);
+        valueSpheres = ValueSpheres.NONE;
+        displayingXYZ = false;
+        cloudGeometry = null;
+        animator.stop();
+        functionPlayer.stop();
+        clearPickTree();
+        displayAxes();
+        initialDisplayValuePoints();
+    }
+
+    /**
+     * Simply displaying x, y and z axes based on sphere radius and interval length of each axis;
+     * The axes are created on the first call only
+     */
+    private void displayAxes() {
+        if (axes.isEmpty()) {
+            double longSide = (length + 2) * spread;
+            double shortSide = valueBallRadius;
+            PhongMaterial blackMaterial = new PhongMaterial(Color.BLACK);
+            axes.add(new Box(shortSide, shortSide, longSide));
+            axes.add(new Box(shortSide, longSide, shortSide));
+            axes.add(new Box(longSide, shortSide, shortSide));
+            for (Box axis : axes) {
+                axis.setMaterial(blackMaterial);
+            }
+        }
+        group.getChildren().addAll(axes);
+    }
+
+    /**
+     * Read and display point-cloud from provided file in .xyz format;
+     * The cloud is loaded in the background through its binary sidecar, the points read so far are displayed
+     * progressively; Once loaded, it is optionally downsampled, normalized to <-1, 1> based on its bounding box,
+     * indexed by an octree and displayed as a few batched meshes at the level of detail fitting the current zoom;
+     * Displaying another cloud or a plot cancels the load
+     * @param filename filename of desired .xyz file to be displayed
+     */
+    public void displayXYZ(String filename) {
+        evaluator.cancel();
+        animator.stop();
+        functionPlayer.stop();
+        clearPickTree();
+        displayingXYZ = true;
+        displayedCloud = filename;
+        group.getChildren().clear();
+        group.getChildren().add(ambientLight);
+        valueSpheres = ValueSpheres.NONE;
+        spherePool.release();
+        cloudGeometry = null;
+        cloudMeshes = new ArrayList<>();
+        cloudNodes = new ArrayList<>();
+        cloudPointCount = 0;
+        cloudPreview.getChildren().clear();
+        cloudPreview.getTransforms().setAll(cloudPreviewScale, cloudPreviewTranslate);
+        group.getChildren().add(cloudPreview);
+        loadProgressBar.setProgress(0);
+        cloudInfo.setText("");
+
+        Path path = new File(filename).toPath();
+        PerformanceEvents.CloudLoad event = new PerformanceEvents.CloudLoad();
+        event.begin();
+        cloudLoader.load(path, 10 * spread, getCloudReduction(), new CloudLoader.Listener() {
+            /**
+             * True once the file is being read, false if the cloud was taken from the cache
+             */
+            private boolean reading;
+
+            @Override
+            public void batch(FloatBuffer coordinates, int offset, int pointCount, double progress) {
+                reading = true;
+                displayPreviewBatch(coordinates, offset, pointCount);
+                loadProgressBar.setProgress(progress);
+                loadProgressBar.setVisible(true);
+            }
+
+            @Override
+            public void read(long nanos, long bytes, boolean parsed) {
+                reading = true;
+                performanceHud.recordLoad(nanos, bytes, parsed);
+            }
+
+            @Override
+            public void finished(CloudCache.Geometry geometry) {
+                group.getChildren().remove(cloudPreview);
+                cloudPreview.getChildren().clear();
+                loadProgressBar.setVisible(false);
+                cloudGeometry = geometry;
+                pickTree = geometry.getKdTree();
+                cloudMeshes = geometry.getMeshes();
+                cloudNodes = geometry.getNodes();
+                cloudPointCount = 0;
+                for (Octree.Node node : cloudNodes) {
+                    cloudPointCount += node.getSampleCount();
+                }
+                group.getChildren().addAll(cloudMeshes);
+                refreshCloudDetail();
+                cloudInfo.setText(String.format("%d of %d points retained", geometry.getRetainedPointCount(),
+                                                geometry.getLoadedPointCount()));
+                if (!reading) {
+                    performanceHud.recordCachedLoad();
+                }
+                event.file = filename;
+                event.points = geometry.getLoadedPointCount();
+                event.retained = geometry.getRetainedPointCount();
+                event.bytes = path.toFile().length();
+                event.cached = !reading;
+                event.commit();
+            }
+        });
+    }
+
+    /**
+     * @return reduction of loaded point-clouds chosen by downsampleCheckBox and voxelSizeSlider
+     */
+    private CloudLoader.Reduction getCloudReduction() {
+        if (!downsampleCheckBox.isSelected()) {
+            return CloudLoader.Reduction.NONE;
+        }
+        double voxelSize = voxelSizeSlider.getValue() / 1000;
+        int pointBudget = (int) (pointBudgetSlider.getValue() * 1000);
+        if (voxelSize == 0) {
+            return new CloudLoader.Reduction("budget " + pointBudget, cloud -> VoxelDownsampler.downsampleToCount(cloud, pointBudget));
+        }
+        return new CloudLoader.Reduction("voxel " + voxelSize,
+                                         cloud -> VoxelDownsampler.downsample(cloud, (float) (voxelSize * VoxelDownsampler.getExtent(cloud))));
+    }
+
+    /**
+     * Loads the displayed point-cloud again, after the settings of its downsampling changed
+     */
+    private void reloadCloud() {
+        if (displayingXYZ && displayedCloud != null) {
+            displayXYZ(displayedCloud);
+        }
+    }
+
+    /**
+     * Displays a batch of a loading point-cloud in cloudPreview, as long as the point budget allows;
+     * The preview's transforms normalize the points by the bounds of all points displayed so far;
+     * Only the displayed points are copied to the heap
+     * @param coordinates packed x, y, z coordinates containing the batch
+     * @param offset index of the first point of the batch
+     * @param pointCount number of points in the batch
+     */
+    private void displayPreviewBatch(FloatBuffer coordinates, int offset, int pointCount) {
+        int count = Math.min(pointCount, (int) (pointBudgetSlider.getValue() * 1000) - cloudPointCount);
+        if (count <= 0) {
+            return;
+        }
+        float[] batch = new float[3 * count];
+        coordinates.get(3 * offset, batch, 0, batch.length);
+        if (cloudPointCount == 0) {
+            for (int axis = 0; axis < 3; axis++) {
+                cloudPreviewMin[axis] = batch[axis];
+                cloudPreviewMax[axis] = batch[axis];
+            }
+        }
+        for (int i = 0; i < batch.length; i += 3) {
+            for (int axis = 0; axis < 3; axis++) {
+                cloudPreviewMin[axis] = Math.min(cloudPreviewMin[axis], batch[i + axis]);
+                cloudPreviewMax[axis] = Math.max(cloudPreviewMax[axis], batch[i + axis]);
+            }
+        }
+        float[] normalization = PointCloud.normalization(cloudPreviewMin, cloudPreviewMax);
+        double factor = normalization[3] * 10 * spread;
+        cloudPreviewTranslate.setX(-normalization[0]);
+        cloudPreviewTranslate.setY(-normalization[1]);
+        cloudPreviewTranslate.setZ(-normalization[2]);
+        cloudPreviewScale.setX(factor);
+        cloudPreviewScale.setY(factor);
+        cloudPreviewScale.setZ(factor);
+        // the radius is given in the coordinates of the file, so that the points appear with valueBallRadius once scaled
+        cloudPreview.getChildren().addAll(PointCloudMesh.build(batch, count, (float) (valueBallRadius / factor),
+                                                               palette.getMaterial(palette.size() - 1)));
+        cloudPointCount += count;
+    }
+
+    /**
+     * Chooses the level of detail of the displayed point-cloud based on the current camera, zoom and point budget;
+     * The meshes are rebuilt only if the chosen octree nodes changed
+     */
+    private void refreshCloudDetail() {
+        if (!displayingXYZ || cloudGeometry == null) {
+            return;
+        }
+        List<Octree.Node> nodes = cloudGeometry.getOctree().selectLevelOfDetail(this::projectedSize,
+                                                                                (int) (pointBudgetSlider.getValue() * 1000));
+        if (nodes.equals(cloudNodes)) {
+            return;
+        }
+        float[] coordinates = cloudGeometry.getOctree().gather(nodes);
+        group.getChildren().removeAll(cloudMeshes);
+        cloudPointCount = coordinates.length / 3;
+        cloudMeshes = PointCloudMesh.build(coordinates, cloudPointCount, (float) valueBallRadius,
+                                           palette.getMaterial(palette.size() - 1));
+        group.getChildren().addAll(cloudMeshes);
+        cloudNodes = nodes;
+        cloudGeometry.setMeshes(cloudNodes, cloudMeshes);
+        cloudCache.update(cloudGeometry);
+    }
+
+    /**
+     * Projects a sphere given in the coordinates of group onto the screen of the camera
+     * @param x x coordinate of the centre
+     * @param y y coordinate of the centre
+     * @param z z coordinate of the centre
+     * @param radius radius of the sphere
+     * @return projected diameter in pixels, -1 if the sphere is outside the camera's view
+     */
+    private double projectedSize(double x, double y, double z, double radius) {
+        Point3D inCamera = camera.sceneToLocal(group.localToScene(x, y, z));
+        if (inCamera.getZ() + radius <= camera.getNearClip()) {
+            return -1;
+        }
+        double halfHeight = Math.max(inCamera.getZ(), camera.getNearClip())
+                            * Math.tan(Math.toRadians(camera.getFieldOfView()) / 2);
+        double halfWidth = halfHeight * scene.getWidth() / scene.getHeight();
+        if (Math.abs(inCamera.getX()) - radius > halfWidth || Math.abs(inCamera.getY()) - radius > halfHeight) {
+            return -1;
+        }
+        return radius / halfHeight * scene.getHeight();
+    }
+
+    /**
+     * Creation of value-spheres for plots;
+     * The spheres (valueSpheres) are in the same order as the samples of functionGrid
+     * (in adaptive mode, only the evaluated samples get spheres);
+     * A new grid is only created if the resolution changed, it takes over the heights of the previous one;
+     * The spheres come from spherePool: the ones already displayed are just repositioned, only the difference
+     * in their count is added to or removed from the scene;
+     * In surface mode, a single heightfield mesh is displayed instead of the spheres (reused while the grid is the same)
+     * and the pool is released
+     */
+    private void initialDisplayValuePoints()  {
+        double resolution = resolutionSlider.getValue();
+        if (functionGrid == null || functionGrid.getResolution() != resolution) {
+            FunctionGrid grid = new FunctionGrid(defaultLowerLimit, defaultLowerLimit, length, resolution);
+            if (functionGrid != null) {
+                grid.copyHeightsFrom(functionGrid);
+            }
+            functionGrid = grid;
+            heightfield = null;
+        }
+
+        if (surfaceModeCheckBox.isSelected()) {
+            showValueSpheres(ValueSpheres.NONE);
+            spherePool.release();
+            if (heightfield == null) {
+                heightfield = new HeightfieldMesh(functionGrid, palette, spread);
+            }
+            heightfield.update(true, interpolationFraction);
+            if (!group.getChildren().contains(heightfield.getView())) {
+                group.getChildren().add(heightfield.getView());
+            }
+            return;
+        }
+        if (heightfield != null) {
+            group.getChildren().remove(heightfield.getView());
+        }
+        // adaptive samples are only known after the evaluation, the spheres are laid out then
+        layoutValueSpheres(adaptiveCheckBox.isSelected() ? new int[0] : null);
+    }
+
+    /**
+     * Positions value-spheres at the given samples of functionGrid and displays them
+     * @param samples indices of the displayed samples, null for all samples
+     */
+    private void layoutValueSpheres(int[] samples) {
+        int count = (samples == null) ? functionGrid.size() : samples.length;
+        showValueSpheres(new ValueSpheres(functionGrid, samples, spherePool.take(count), palette, spread,
+                                          interpolationFraction));
+    }
+
+    /**
+     * Makes the spheres the displayed value-spheres, adding to / removing from the scene only the difference
+     * against the currently displayed ones (both arrays are prefixes of the same pool)
+     * @param spheres value-spheres to display
+     */
+    private void showValueSpheres(ValueSpheres spheres) {
+        Sphere[] shown = valueSpheres.getSpheres();
+        Sphere[] next = spheres.getSpheres();
+        if (next.length > shown.length) {
+            group.getChildren().addAll(Arrays.asList(next).subList(shown.length, next.length));
+        } else if (next.length < shown.length) {
+            group.getChildren().removeAll(new HashSet<>(Arrays.asList(shown).subList(next.length, shown.length)));
+        }
+        valueSpheres = spheres;
+    }
+
+    /**
+     * Changes displayed function;
+     * If there is no plot to just display the values, one is created;
+     * A TimeFunction is played until another function is displayed
+     * @param f binary function to be displayed
+     */
+    public void changeFunction(DoubleBinaryOperator f) {
+        currentFunction = f;
+        if (displayingXYZ) {
+            initialDisplay();
+        }
+        calculateNewFunctionValues(.3);
+    }
+
+    /**
+     * Compiles the expression entered in expressionField and plots it, errors of the expression are displayed below the field
+     */
+    private void plotExpression() {
+        DoubleBinaryOperator f;
+        try {
+            f = expressionCompiler.compile(expressionField.getText());
+        } catch (IllegalArgumentException e) {
+            expressionError.setText(e.getMessage());
+            return;
+        }
+        expressionError.setText("");
+        changeFunction(f);
+    }
+
+    /**
+     * Calculates values, by which the value-spheres are to move along the z-axis during animation transition;
+     * The difference from calculateNewFunctionValues is the lack of the need to calculate the values and monitor the limits on the z-axis
+     *
+     * @param newZoom desired multiplier for values on the z axis
+     */
+    private void calculateZoomValues(double newZoom) {
+        double multiplicationFactor = newZoom/currentZoom;
+        currentZoom = newZoom;
+        functionGrid.zoom(multiplicationFactor);
+        functionPlayer.setZoom(currentZoom);
+        contours.setZScale(currentZoom / evaluatedZoom);
+        if (!displayingXYZ) {
+            invalidatePickTree();
+        }
+    }
+
+    /**
+     * Drops the pick tree, until another one is set or built no point is picked
+     */
+    private void clearPickTree() {
+        pickTree = null;
+        pickTreeStale = false;
+        pickTreeGeneration++;
+        pickInfo.setText("");
+    }
+
+    /**
+     * Drops the pick tree of the plot after its displayed heights changed, a new one is built on the next mouse move
+     */
+    private void invalidatePickTree() {
+        clearPickTree();
+        pickTreeStale = true;
+    }
+
+    /**
+     * Builds the pick tree of the evaluated values of the plot at the current zoom in the background and picks
+     * the point under the mouse once it is built, unless the values change meanwhile; After an adaptive evaluation
+     * only the evaluated samples are put in the tree, not the interpolated ones;
+     * Nothing is built while a time-dependent function is played
+     */
+    private void buildPickTree() {
+        pickTreeStale = false;
+        if (displayingXYZ || functionPlayer.isPlaying() || evaluatedGrid != functionGrid) {
+            return;
+        }
+        long request = pickTreeGeneration;
+        FunctionGrid grid = evaluatedGrid;
+        int[] samples = evaluatedSamples;
+        double[] heights = new double[evaluatedValues.length];
+        double factor = currentZoom / evaluatedZoom;
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = evaluatedValues[i] * factor;
+        }
+        CompletableFuture.supplyAsync(() -> KdTree.ofGrid(grid, heights, samples, spread,
+                                                                    ForkJoinPool.commonPool()),
+                                      ForkJoinPool.commonPool())
+                         .thenAcceptAsync(tree -> {if (pickTreeGeneration == request) {
+                                                       pickTree = tree;
+                                                       showPickedPoint();
+                                                   }
+                                                  }, Platform::runLater)
+                         .exceptionally(e -> {e.printStackTrace();
+                                              return null;
+                                             });
+    }
+
+    /**
+     * Picks the point under the mouse (at mouseX, mouseY) by the ray from the camera through it and describes it
+     * in pickInfo: its coordinates in the file for point-clouds, its x, y and value for plots
+     */
+    private void showPickedPoint() {
+        if (pickTree == null) {
+            if (pickTreeStale) {
+                buildPickTree();
+            }
+            return;
+        }
+        // the ray goes from the eye of the camera through the mouse on the plane at distance 1, in the coordinates of group
+        double halfHeight = Math.tan(Math.toRadians(camera.getFieldOfView()) / 2);
+        double halfWidth = halfHeight * scene.getWidth() / scene.getHeight();
+        Point3D origin = group.sceneToLocal(camera.localToScene(0, 0, 0));
+        Point3D through = group.sceneToLocal(camera.localToScene((2 * mouseX / scene.getWidth() - 1) * halfWidth,
+                                                                 (2 * mouseY / scene.getHeight() - 1) * halfHeight, 1));
+        Point3D direction = through.subtract(origin);
+        int point = pickTree.pick(origin.getX(), origin.getY(), origin.getZ(),
+                                  direction.getX(), direction.getY(), direction.getZ(), pickRadius);
+        if (point < 0) {
+            pickInfo.setText("");
+        } else if (displayingXYZ) {
+            pickInfo.setText(String.format("x = %.4g%ny = %.4g%nz = %.4g",
+                                           cloudGeometry.toFileCoordinate(0, pickTree.getX(point)),
+                                           cloudGeometry.toFileCoordinate(1, pickTree.getY(point)),
+                                           cloudGeometry.toFileCoordinate(2, pickTree.getZ(point))));
+        } else {
+            int sample = pickTree.getIndex(point);
+            int columns = evaluatedGrid.getColumns();
+            pickInfo.setText(String.format("x = %.3f%ny = %.3f%nf(x, y) = %.4g",
+                                           evaluatedGrid.getX(sample % columns) - evaluatedXOffset,
+                                           evaluatedGrid.getY(sample / columns) - evaluatedYOffset,
+                                           evaluatedValues[sample] / evaluatedZoom));
+        }
+    }
+
+    /**
+     * Displays the contour lines of the last evaluated values if contourCheckBox is selected, otherwise hides them;
+     * They are also hidden while a point-cloud is displayed or a time-dependent function is played
+     */
+    private void updateContours() {
+        if (!contourCheckBox.isSelected() || displayingXYZ || functionPlayer.isPlaying() || evaluatedGrid != functionGrid) {
+            group.getChildren().remove(contours.getView());
+            return;
+        }
+        double[] levels;
+        try {
+            levels = getContourLevels();
+        } catch (NumberFormatException e) {
+            contourLevelsError.setText("Invalid level " + e.getMessage());
+            return;
+        }
+        contourLevelsError.setText("");
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] *= evaluatedZoom;
+        }
+        PerformanceEvents.ContourExtraction event = new PerformanceEvents.ContourExtraction();
+        event.begin();
+        TileCache.Lattice lattice = new TileCache.Lattice(evaluatedGrid, evaluatedXOffset, evaluatedYOffset);
+        float[] segments = contourExtractor.extract(evaluatedGrid, evaluatedValues, lattice, levels);
+        contours.update(evaluatedGrid, segments, spread);
+        contours.setZScale(currentZoom / evaluatedZoom);
+        event.segments = segments.length / 6;
+        event.recomputedTiles = contourExtractor.getRecomputedTiles();
+        event.tiles = contourExtractor.getTileCount();
+        event.commit();
+        if (!group.getChildren().contains(contours.getView())) {
+            group.getChildren().add(contours.getView());
+        }
+    }
+
+    /**
+     * @return levels entered into contourLevelsField (separated by commas or spaces), or automatic levels
+     * if the field is empty, in function units
+     * @throws NumberFormatException if a level is not a number
+     */
+    private double[] getContourLevels() {
+        String text = contourLevelsField.getText().strip();
+        if (text.isEmpty()) {
+            return ContourExtractor.autoLevels(evaluatedMinValue, evaluatedMaxValue, contourLevelCount);
+        }
+        String[] entries = text.split("[,\\s]+");
+        double[] levels = new double[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            levels[i] = Double.parseDouble(entries[i]);
+        }
+        return levels;
+    }
+
+    /**
+     * Recalculate the function values and the increments for animation, then start the animation;
+     * The values are evaluated in parallel off the JavaFX thread, a newer call supersedes a still running one;
+     * In adaptive mode, only the samples chosen by adaptiveSampler are evaluated, the rest is interpolated;
+     * A time-dependent function is played by functionPlayer instead (always at all samples), it continues in its time;
+     * The function gets offset values, so that no matter what interval it's displaying, it's always displayed at the same coordinates
+     * @param animationDelay seconds by which to delay the animation after the values are ready
+     */
+    private void calculateNewFunctionValues(double animationDelay) {
+        calculateNewFunctionValues(animationDelay, false);
+    }
+
+    /**
+     * Recalculate the function values as calculateNewFunctionValues(animationDelay)
+     * @param animationDelay seconds by which to delay the animation after the values are ready
+     * @param immediate true if the values are to be displayed right away, without an animated transition
+     */
+    private void calculateNewFunctionValues(double animationDelay, boolean immediate) {
+        plottedXOffset = getXOffset();
+        plottedYOffset = getYOffset();
+        // a window moved by whole samples shares the cached tiles of the previous ones
+        double resolution = functionGrid.getResolution();
+        double xOffset = TileCache.Lattice.align(functionGrid.getX(0), plottedXOffset, resolution);
+        double yOffset = TileCache.Lattice.align(functionGrid.getY(0), plottedYOffset, resolution);
+        if (currentFunction instanceof TimeFunction) {
+            evaluator.cancel();
+            animator.stop();
+            if (!surfaceModeCheckBox.isSelected() && valueSpheres.size() != functionGrid.size()) {
+                layoutValueSpheres(null);
+            }
+            functionPlayer.play(functionGrid, (TimeFunction) currentFunction, xOffset, yOffset, currentZoom);
+            updateContours();
+            clearPickTree();
+            return;
+        }
+        functionPlayer.stop();
+        boolean adaptive = adaptiveCheckBox.isSelected();
+        double zoom = currentZoom;
+        PerformanceEvents.FunctionEvaluation event = new PerformanceEvents.FunctionEvaluation();
+        event.begin();
+        long evaluationStart = System.nanoTime();
+
+        Consumer<FunctionEvaluator.Result> display = result -> {
+            if (displayingXYZ || result.getGrid() != functionGrid) {
+                return;
+            }
+            // the zoom may have changed while the values were evaluated
+            double factor = currentZoom / zoom;
+            double[] values = result.getValues();
+            if (factor != 1) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] *= factor;
+                }
+            }
+            functionGrid.setTargets(values, result.getMinValue() * factor, result.getMaxValue() * factor);
+            minValue = functionGrid.getMinValue();
+            maxValue = functionGrid.getMaxValue();
+            minMaxDifference = (minValue - maxValue);
+            evaluatedGrid = functionGrid;
+            evaluatedValues = values;
+            evaluatedSamples = result.getEvaluatedSamples();
+            evaluatedZoom = currentZoom;
+            evaluatedXOffset = xOffset;
+            evaluatedYOffset = yOffset;
+            evaluatedMinValue = result.getMinValue() / zoom;
+            evaluatedMaxValue = result.getMaxValue() / zoom;
+            updateContours();
+            invalidatePickTree();
+            int[] samples = result.getEvaluatedSamples();
+            if (!surfaceModeCheckBox.isSelected()) {
+                if (samples != null || valueSpheres.size() != functionGrid.size()) {
+                    layoutValueSpheres(samples);
+                }
+            }
+            event.samples = (samples == null) ? functionGrid.size() : samples.length;
+            event.adaptive = adaptive;
+            event.commit();
+            performanceHud.recordEvaluation(System.nanoTime() - evaluationStart, event.samples);
+            if (immediate) {
+                animator.jump(functionGrid, true);
+            } else {
+                animate(animationDelay, true);
+            }
+        };
+        if (adaptive) {
+            evaluator.submitAdaptive(functionGrid, currentFunction, xOffset, yOffset, zoom, adaptiveSampler, display);
+        } else {
+            evaluator.submit(functionGrid, currentFunction, xOffset, yOffset, zoom, display);
+        }
+    }
+
+    /**
+     * @return offset of the plotted interval on the x axis, as set by the sliders
+     */
+    private double getXOffset() {
+        return xMinSlider.getValue()*10 + xMinPrecisionSlider.getValue();
+    }
+
+    /**
+     * @return offset of the plotted interval on the y axis, as set by the sliders
+     */
+    private double getYOffset() {
+        return yMinSlider.getValue()*10 + yMinPrecisionSlider.getValue();
+    }
+
+    /**
+     * Brings the plot to the current values of the offset, zoom and resolution sliders, run by sliderUpdates;
+     * A changed zoom only scales the heights (calculateZoomValues) and displays them right away, a changed resolution
+     * rebuilds the plot (a displayed point-cloud is replaced by it) and changed offsets or resolution re-evaluate
+     * the function, displayed without an animation; While an evaluation is still running, the re-evaluation waits
+     * for a later frame, so there is at most one in flight and the values the sliders pass meanwhile are dropped
+     */
+    private void applySliders() {
+        double zoom = Math.pow(10, zUnitSlider.getValue());
+        if (zoom != currentZoom) {
+            calculateZoomValues(zoom);
+            if (!displayingXYZ && !functionPlayer.isPlaying()) {
+                animator.jump(functionGrid, false);
+            }
+        }
+        boolean resolutionChanged = resolutionSlider.getValue() != functionGrid.getResolution();
+        boolean offsetsChanged = getXOffset() != plottedXOffset || getYOffset() != plottedYOffset;
+        if (!resolutionChanged && (!offsetsChanged || displayingXYZ)) {
+            return;
+        }
+        if (!evaluator.isIdle()) {
+            sliderUpdates.request();
+            return;
+        }
+        if (resolutionChanged) {
+            if (displayingXYZ) {
+                initialDisplay();
+            } else {
+                animator.stop();
+                initialDisplayValuePoints();
+            }
+        }
+        calculateNewFunctionValues(0, true);
+    }
+
+    /**
+     * Returns the factor, alpha, for which the value is the result of interpolation between minValue and maxValue
+     * @param value value == alpha * minValue + (1-alpha) * maxValue
+     * @return alpha
+     */
+    private double getInterpolationFraction(double value) {
+        return ColourPalette.fraction(value, maxValue, minMaxDifference);
+    }
+
+    /**
+     * Appropriately changes colours of a displayed plot or point-cloud after the colours were chosen;
+     * Only the shared palette (and the texture of the surface) changes, value-spheres and point-clouds reference
+     * the palette's materials and so change their colours with it
+     */
+    private void recolour() {
+        recolourEvent.begin();
+        palette.setColours(maxColourPicker.getValue(), minColourPicker.getValue());
+        if (heightfield != null) {
+            heightfield.updateColours();
+        }
+        recolourEvent.commit();
+    }
+
+    /**
+     * Initializes animation of transitions to new function values;
+     * An animation still in progress is redirected from the current heights
+     * @param delay seconds by which to delay the animation start
+     * @param recolour true if the change of colour during the animation is desired
+     */
+    private void animate(double delay, boolean recolour) {
+        animator.animate(functionGrid, delay, recolour);
+    }
+
+    /**
+     * One frame of the animation, the heights of functionGrid are already interpolated;
+     * each value-sphere (or vertex of the surface) is moved and recoloured if desired
+     * @param recolour true if the change of colour during the animation is desired
+     */
+    private void animationStep(boolean recolour) {
+        PerformanceEvents.AnimationStep event = animationStepEvent;
+        event.begin();
+        long stepStart = System.nanoTime();
+        if (surfaceModeCheckBox.isSelected()) {
+            heightfield.update(recolour, interpolationFraction);
+        } else {
+            valueSpheres.update(recolour, interpolationFraction);
+        }
+        performanceHud.recordAnimationStep(System.nanoTime() - stepStart);
+        event.objects = getDisplayedPointCount();
+        event.recolour = recolour;
+        event.commit();
+    }
+
+    /**
+     * One frame of the playback of a time-dependent function, the heights of functionGrid were just replaced;
+     * The colours follow the min/max of the frame
+     * @param recolour true if the colours are to be updated
+     */
+    private void playbackStep(boolean recolour) {
+        minValue = functionGrid.getMinValue();
+        maxValue = functionGrid.getMaxValue();
+        minMaxDifference = (minValue - maxValue);
+        animationStep(recolour);
+    }
+
+    /**
+     * @return number of nodes of the plot's scene graph, taken from the known structures instead of a walk over it:
+     * group with its children (value-spheres, meshes, axes, lights) and the batches of a point-cloud preview
+     */
+    private int getNodeCount() {
+        int count = 1 + group.getChildren().size();
+        if (cloudPreview.getParent() == group) {
+            count += cloudPreview.getChildren().size();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of displayed points: points of the point-cloud, vertices of the surface or value-spheres
+     */
+    private int getDisplayedPointCount() {
+        if (displayingXYZ) {
+            return cloudPointCount;
+        }
+        return surfaceModeCheckBox.isSelected() ? functionGrid.size() : valueSpheres.size();
+    }
+
+    /**
+     * Binds mouse control to target scene and group to move;
+     * On drag, the group is rotated;
+     * On scroll, the group is moved to/from the camera (within boundaries);
+     * After scrolling or rotating, the level of detail of a displayed point-cloud is updated;
+     * On move, the point under the mouse is picked (see showPickedPoint)
+     * @param group target group to move
+     * @param scene target scene to work on
+     */
+    private void initiateMouseControl(Group group, SubScene scene) {
+        Rotate xRotate = new Rotate(25, Rotate.X_AXIS);
+        Rotate yRotate = new Rotate(0, Rotate.Y_AXIS);
+        group.getTransforms().addAll(xRotate, yRotate);
+
+        scene.setOnMousePressed(event -> {anchorX = event.getSceneX();
+                                          anchorY = event.getSceneY();
+                                          anchorAngleX = xRotate.getAngle();
+                                          anchorAngleY = yRotate.getAngle();
+                                         });
+        scene.setOnMouseDragged(event -> {xRotate.setAngle(anchorAngleX - (anchorY - event.getSceneY())/2);
+                                          yRotate.setAngle(anchorAngleY - (anchorX - event.getSceneX())/2);
+                                         });
+        scene.setOnScroll(event -> {double newY = group.getTranslateY() + event.getDeltaY();
+                                    if (newY < maxDistance && newY > minDistance) {
+                                        group.translateYProperty().set(newY);
+                                        refreshCloudDetail();
+                                    }
+                                   });
+        scene.setOnMouseReleased(event -> refreshCloudDetail());
+        scene.setOnMouseMoved(event -> {mouseX = event.getX();
+                                        mouseY = event.getY();
+                                        showPickedPoint();
+                                       });
+    }
+
+    /**
+     * Sets up the UI control sidebar;
+     * Sets the style;
+     * Adds buttons for various functions and point-clouds;
+     * Adds sliders for plot manipulation;
+     * Adds colourPickers for choice of colours for the plot and the description of the point under the mouse
+     */
+    private void prepareControlPanel() {
+        rightPanel.setMinWidth(120);
+        rightPanel.setMinHeight(500);
+        rightPanel.setStyle("-fx-background-color: LightGrey;");
+        rightPanel.setAlignment(Pos.CENTER);
+        rightPanel.setSpacing(5);
+        leftPanel.setSpacing(20);
+        leftPanel.setMinWidth(30);
+        leftPanel.setStyle("-fx-background-color: LightGrey;");
+        leftPanel.setAlignment(Pos.CENTER);
+        addFunctionButtons();
+        addSliders();
+        addColourPickers();
+    }
+
+    /**
+     * Adds buttons to the UI control sidebars left part based on functionMap and cloudMap, the field for user-entered functions,
+     * the checkBox switching plots between value-spheres and a surface, the checkBox enabling adaptive sampling,
+     * the checkBox showing the performance overlay and the checkBox enabling downsampling of point-clouds
+     */
+    private void addFunctionButtons() {
+        leftPanel.getChildren().add(new Text("Functions:"));
+        for (String functionName : functionMap.keySet()) {
+            Button button = new Button(functionName);
+            button.setOnAction(e -> changeFunction(functionMap.get(functionName)));
+            button.setMaxWidth(80);
+            button.setMinWidth(80);
+            leftPanel.getChildren().add(button);
+        }
+        expressionField = new TextField("sin(sqrt(x^2+y^2))*exp(-x/4)");
+        expressionField.setMaxWidth(80);
+        expressionField.setOnAction(e -> plotExpression());
+        Button expressionButton = new Button("Plot f(x, y)");
+        expressionButton.setOnAction(e -> plotExpression());
+        expressionButton.setMaxWidth(80);
+        expressionButton.setMinWidth(80);
+        expressionError.setFill(Color.RED);
+        expressionError.setWrappingWidth(80);
+        leftPanel.getChildren().addAll(expressionField, expressionButton, expressionError);
+        surfaceModeCheckBox = new CheckBox("Surface");
+        surfaceModeCheckBox.setOnAction(e -> {if (!displayingXYZ) {
+                                                  initialDisplayValuePoints();
+                                                  calculateNewFunctionValues(.3);
+                                              }
+                                             });
+        leftPanel.getChildren().add(surfaceModeCheckBox);
+        adaptiveCheckBox = new CheckBox("Adaptive");
+        adaptiveCheckBox.setOnAction(e -> {if (!displayingXYZ) {
+                                               calculateNewFunctionValues(.3);
+                                           }
+                                          });
+        leftPanel.getChildren().add(adaptiveCheckBox);
+        contourCheckBox = new CheckBox("Contours");
+        contourCheckBox.setOnAction(e -> updateContours());
+        contourLevelsField = new TextField();
+        contourLevelsField.setPromptText("auto levels");
+        contourLevelsField.setMaxWidth(80);
+        contourLevelsField.setOnAction(e -> updateContours());
+        contourLevelsError.setFill(Color.RED);
+        contourLevelsError.setWrappingWidth(80);
+        leftPanel.getChildren().addAll(contourCheckBox, contourLevelsField, contourLevelsError);
+        performanceCheckBox = new CheckBox("Performance");
+        performanceCheckBox.setOnAction(e -> performanceHud.setVisible(performanceCheckBox.isSelected()));
+        leftPanel.getChildren().add(performanceCheckBox);
+
+        leftPanel.getChildren().add(new Text("Point clouds:"));
+        for (String filename : cloudMap.keySet()) {
+            Button button = new Button(filename);
+            button.setOnAction(e -> displayXYZ(cloudMap.get(filename)));
+            button.setMaxWidth(80);
+            button.setMinWidth(80);
+            leftPanel.getChildren().add(button);
+        }
+        loadProgressBar = new ProgressBar(0);
+        loadProgressBar.setMaxWidth(80);
+        loadProgressBar.setVisible(false);
+        leftPanel.getChildren().add(loadProgressBar);
+        downsampleCheckBox = new CheckBox("Downsample");
+        downsampleCheckBox.setOnAction(e -> reloadCloud());
+        cloudInfo.setWrappingWidth(80);
+        leftPanel.getChildren().addAll(downsampleCheckBox, cloudInfo);
+
+    }
+
+    /**
+     * Creation, placement to the right part of the UI sidebar and styling of a slider control element
+     * @param title test to be displayed above
+     * @param min lower limit for the slider
+     * @param max upper limit for the slider
+     * @param defaultValue default value
+     * @param majorTicks length of the interval between the major ticks
+     * @param minorTicks length of the interval between the minor ticks
+     * @param snap true if the slider is to snap to a ticks on release
+     * @return created Slider
+     */
+    private Slider addSlider(String title, double min, double max, double defaultValue, double majorTicks, double minorTicks, boolean snap) {
+        Slider slider = new Slider(min, max, defaultValue);
+        slider.setShowTickMarks(true);
+        slider.setShowTickLabels(true);
+        slider.setMajorTickUnit(majorTicks);
+        slider.setMinorTickCount((int)(majorTicks/minorTicks) - 1);
+        slider.setBlockIncrement(0.1f);
+        slider.setSnapToTicks(snap);
+        slider.setPadding(new Insets(3,10,15,10));
+        rightPanel.getChildren().add(new Text(title));
+        rightPanel.getChildren().add(slider);
+        return slider;
+    }
+
+    /**
+     * Creation of desired sliders and assignment of their functions;
+     * The plot follows the offset, zoom and resolution sliders continuously (see applySliders),
+     * the point-cloud sliders act on release
+     */
+    private void addSliders() {
+        zUnitSlider = addSlider("log10(z axis zoom)", minZUnit, maxZUnit, defaultZUnit, (maxZUnit-minZUnit)/10, (maxZUnit-minZUnit)/10, false);
+        xMinSlider = addSlider("(x axis offset)*10", minLimit/10, maxLimit/10, 0,(maxLimit/10-minLimit/10)/10, 1, true);
+        xMinPrecisionSlider = addSlider("x axis offset", -10, 10, 0,10, 1, true);
+        yMinSlider = addSlider("(y axis offset)*10", minLimit/10, maxLimit/10, 0,(maxLimit/10-minLimit/10)/10, 1, true);
+        yMinPrecisionSlider = addSlider("y axis offset", -10, 10, 0,10,1, true);
+        resolutionSlider = addSlider("Resolution", minResolution, maxResolution, defaultResolution, majorResolutionTicks, minorResolutionTicks, true);
+        // dragging, clicking and keyboard changes all go through the value, applied once per frame
+        for (Slider slider : List.of(zUnitSlider, xMinSlider, xMinPrecisionSlider, yMinSlider, yMinPrecisionSlider, resolutionSlider)) {
+            slider.valueProperty().addListener((observable, oldValue, newValue) -> sliderUpdates.request());
+        }
+
+        pointBudgetSlider = addSlider("Point budget (thousands)", minPointBudget, maxPointBudget, defaultPointBudget, 500, 50, false);
+        pointBudgetSlider.setOnMouseReleased(e -> {if (downsampleCheckBox.isSelected() && voxelSizeSlider.getValue() == 0) {
+                                                       reloadCloud();
+                                                   } else {
+                                                       refreshCloudDetail();
+                                                   }
+                                                  });
+        voxelSizeSlider = addSlider("Voxel size (per mille, 0 = budget)", 0, maxVoxelSize, 0, 5, 1, true);
+        voxelSizeSlider.setOnMouseReleased(e -> {if (downsampleCheckBox.isSelected()) {
+                                                     reloadCloud();
+                                                 }
+                                                });
+    }
+
+    /**
+     * Creation of colourPickers for choosing colours
+     */
+    private void addColourPickers() {
+        EventHandler<ActionEvent> changeColours = e -> recolour();
+        minColourPicker = new ColorPicker(defaultMinColour);
+        minColourPicker.setOnAction(changeColours);
+        maxColourPicker = new ColorPicker(defaultMaxColour);
+        maxColourPicker.setOnAction(changeColours);
+        rightPanel.getChildren().addAll(new Text("Min value colour"), maxColourPicker,
+                new Text("Max value colour"), minColourPicker);
+        rightPanel.getChildren().addAll(new Text("Point under the mouse"), pickInfo);
+    }
+
+    /**
+     * The main function launching the application;
+     * With arguments, the application runs headless instead (see BatchExport) and exits with its status
+     * @param args none for the application, a BatchExport command otherwise
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(BatchExport.run(args));
+        }
+        launch();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+package vizualizator3d.main;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Octree spatial index over a point-cloud used for level of detail;
+ * The points are reordered so that every node owns a continuous range of them,
+ * a node's representative subsample is then taken with an even stride from its range,
+ * which spreads it over all of its children proportionally to their sizes;
+ * Leaves hold at most LEAF_CAPACITY points and are always displayed in full, their range is copied in bulk;
+ * The reordered coordinates (and the indices used while building) are kept in direct buffers, off the heap
+ * @author Katarína Osvaldová
+ */
+public class Octree {
+    /**
+     * Maximal number of points in a leaf, also the size of the subsample of inner nodes
+     */
+    public static final int LEAF_CAPACITY = 4096;
+    private static final int MAX_DEPTH = 20;
+    /**
+     * Estimated memory taken by a node, including its share of the children array
+     */
+    private static final long NODE_BYTES = 96;
+
+    /**
+     * Computes how large a node appears on the screen
+     */
+    public interface Projection {
+        /**
+         * @param x x coordinate of the centre of a bounding sphere
+         * @param y y coordinate of the centre of a bounding sphere
+         * @param z z coordinate of the centre of a bounding sphere
+         * @param radius radius of the bounding sphere
+         * @return projected diameter of the sphere in pixels, negative if the sphere is not visible
+         */
+        double projectedSize(double x, double y, double z, double radius);
+    }
+
+    /**
+     * Node of the octree, owning the range [start, end) of the reordered point indices
+     */
+    public static class Node {
+        private final float centreX, centreY, centreZ, halfSize;
+        private final int start, end;
+        private Node[] children;
+        private double projectedSize;
+
+        private Node(float centreX, float centreY, float centreZ, float halfSize, int start, int end) {
+            this.centreX = centreX;
+            this.centreY = centreY;
+            this.centreZ = centreZ;
+            this.halfSize = halfSize;
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean isLeaf() {
+            return children == null;
+        }
+
+        /**
+         * @return number of points representing this node when it is displayed
+         */
+        public int getSampleCount() {
+            return Math.min(end - start, LEAF_CAPACITY);
+        }
+    }
+
+    /**
+     * Coordinates in the order of the nodes, the indices of the original points while building
+     */
+    private FloatBuffer coordinates;
+    private IntBuffer order;
+    private final Node root;
+    private int nodeCount = 1;
+
+    /**
+     * Builds the octree
+     * @param coordinates packed x, y, z coordinates of the points, only read
+     * @param pointCount number of points
+     */
+    public Octree(FloatBuffer coordinates, int pointCount) {
+        this.coordinates = coordinates;
+        order = DirectBuffers.ints(pointCount);
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int i = 0; i < pointCount; i++) {
+            order.put(i, i);
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], coordinates.get(3 * i + axis));
+                max[axis] = Math.max(max[axis], coordinates.get(3 * i + axis));
+            }
+        }
+        if (pointCount == 0) {
+            root = new Node(0, 0, 0, 0, 0, 0);
+            return;
+        }
+        float halfSize = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2])) / 2;
+        root = new Node((min[0] + max[0]) / 2, (min[1] + max[1]) / 2, (min[2] + max[2]) / 2,
+                        Math.max(halfSize, Float.MIN_NORMAL), 0, pointCount);
+        split(root, DirectBuffers.ints(pointCount), 0);
+
+        FloatBuffer reordered = DirectBuffers.floats(3L * pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            int point = order.get(i);
+            reordered.put(3 * i, coordinates.get(3 * point));
+            reordered.put(3 * i + 1, coordinates.get(3 * point + 1));
+            reordered.put(3 * i + 2, coordinates.get(3 * point + 2));
+        }
+        this.coordinates = reordered;
+        order = null;
+    }
+
+    /**
+     * Recursively distributes the points of the node among its octants
+     * @param node node to split
+     * @param scratch temporary array at least as long as the node's range
+     * @param depth depth of the node
+     */
+    private void split(Node node, IntBuffer scratch, int depth) {
+        if (node.end - node.start <= LEAF_CAPACITY || depth == MAX_DEPTH) {
+            return;
+        }
+        int[] counts = new int[8];
+        for (int i = node.start; i < node.end; i++) {
+            counts[octant(node, order.get(i))]++;
+        }
+        int[] offsets = new int[8];
+        for (int o = 1; o < 8; o++) {
+            offsets[o] = offsets[o - 1] + counts[o - 1];
+        }
+        int[] positions = offsets.clone();
+        for (int i = node.start; i < node.end; i++) {
+            int point = order.get(i);
+            scratch.put(positions[octant(node, point)]++, point);
+        }
+        order.put(node.start, scratch, 0, node.end - node.start);
+
+        float quarter = node.halfSize / 2;
+        node.children = new Node[8];
+        nodeCount += 8;
+        for (int o = 0; o < 8; o++) {
+            node.children[o] = new Node(node.centreX + (((o & 1) != 0) ? quarter : -quarter),
+                                        node.centreY + (((o & 2) != 0) ? quarter : -quarter),
+                                        node.centreZ + (((o & 4) != 0) ? quarter : -quarter),
+                                        quarter,
+                                        node.start + offsets[o],
+                                        node.start + offsets[o] + counts[o]);
+            split(node.children[o], scratch, depth + 1);
+        }
+    }
+
+    private int octant(Node node, int point) {
+        return ((coordinates.get(3 * point) >= node.centreX) ? 1 : 0)
+               | ((coordinates.get(3 * point + 1) >= node.centreY) ? 2 : 0)
+               | ((coordinates.get(3 * point + 2) >= node.centreZ) ? 4 : 0);
+    }
+
+    /**
+     * Chooses nodes to display;
+     * Starting at the root, the node appearing largest on the screen is repeatedly replaced by its visible children,
+     * until every chosen node is a leaf, its points are denser than one per pixel, or the refinement would exceed the budget
+     * @param projection projection of the current camera
+     * @param pointBudget maximal number of displayed points (the root's subsample is always displayed)
+     * @return nodes to display
+     */
+    public List<Node> selectLevelOfDetail(Projection projection, int pointBudget) {
+        List<Node> selected = new ArrayList<>();
+        PriorityQueue<Node> queue = new PriorityQueue<>(Comparator.comparingDouble((Node n) -> -n.projectedSize));
+        root.projectedSize = project(projection, root);
+        queue.add(root);
+        int total = root.getSampleCount();
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            if (node.isLeaf() || node.projectedSize / Math.sqrt(node.getSampleCount()) < 1) {
+                selected.add(node);
+                continue;
+            }
+            int childSamples = 0;
+            for (Node child : node.children) {
+                child.projectedSize = (child.end > child.start) ? project(projection, child) : -1;
+                if (child.projectedSize >= 0) {
+                    childSamples += child.getSampleCount();
+                }
+            }
+            if (total - node.getSampleCount() + childSamples > pointBudget) {
+                selected.add(node);
+                continue;
+            }
+            total += childSamples - node.getSampleCount();
+            for (Node child : node.children) {
+                if (child.projectedSize >= 0) {
+                    queue.add(child);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static double project(Projection projection, Node node) {
+        // radius of the sphere circumscribed to the node's cube
+        return projection.projectedSize(node.centreX, node.centreY, node.centreZ, node.halfSize * 1.7321);
+    }
+
+    /**
+     * @return estimated memory taken by the octree, including its coordinates (off the heap)
+     */
+    public long getByteSize() {
+        return 4L * coordinates.capacity() + NODE_BYTES * nodeCount;
+    }
+
+    /**
+     * Copies the representative points of the nodes into a packed coordinate array
+     * @param nodes nodes to gather
+     * @return packed x, y, z coordinates of the subsamples of all nodes
+     */
+    public float[] gather(List<Node> nodes) {
+        int count = 0;
+        for (Node node : nodes) {
+            count += node.getSampleCount();
+        }
+        float[] gathered = new float[3 * count];
+        int g = 0;
+        for (Node node : nodes) {
+            int samples = node.getSampleCount();
+            if (samples == node.end - node.start) {
+                coordinates.get(3 * node.start, gathered, g, 3 * samples);
+                g += 3 * samples;
+                continue;
+            }
+            double stride = (double) (node.end - node.start) / samples;
+            for (int s = 0; s < samples; s++) {
+                int point = node.start + (int) (s * stride);
+                gathered[g++] = coordinates.get(3 * point);
+                gathered[g++] = coordinates.get(3 * point + 1);
+                gathered[g++] = coordinates.get(3 * point + 2);
+            }
+        }
+        return gathered;
+    }
+}
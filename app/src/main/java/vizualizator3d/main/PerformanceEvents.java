@@ -0,0 +1,105 @@
+package vizualizator3d.main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Custom JFR events of the viewer, recorded with e.g. -XX:StartFlightRecording and shown under the category 3D Vizualizator;
+ * The events only cost anything while a recording with them enabled is running, besides their allocation: events
+ * of steps run every frame (AnimationStep, Recolour) are reused instead of created for each frame
+ * @author Katarína Osvaldová
+ */
+public final class PerformanceEvents {
+    private static final String CATEGORY = "3D Vizualizator";
+
+    private PerformanceEvents() {
+    }
+
+    /**
+     * Loading and first display of a point-cloud (displayXYZ)
+     */
+    @Name("vizualizator3d.CloudLoad")
+    @Label("Point-Cloud Load")
+    @Category(CATEGORY)
+    public static class CloudLoad extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Points")
+        public int points;
+
+        @Label("Retained Points")
+        @Description("Number of points left after downsampling")
+        public int retained;
+
+        @Label("Cached")
+        @Description("Taken from the in-process cache without reading the file")
+        public boolean cached;
+
+        @Label("File Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * Evaluation of a plot (calculateNewFunctionValues), from the request to the displayed result;
+     * Superseded requests are not committed
+     */
+    @Name("vizualizator3d.FunctionEvaluation")
+    @Label("Function Evaluation")
+    @Category(CATEGORY)
+    public static class FunctionEvaluation extends Event {
+        @Label("Samples")
+        @Description("Number of evaluated samples")
+        public int samples;
+
+        @Label("Adaptive")
+        public boolean adaptive;
+    }
+
+    /**
+     * Change of the colours (recolour)
+     */
+    @Name("vizualizator3d.Recolour")
+    @Label("Recolour")
+    @Category(CATEGORY)
+    public static class Recolour extends Event {
+    }
+
+    /**
+     * One frame of an animated transition (animationStep)
+     */
+    @Name("vizualizator3d.AnimationStep")
+    @Label("Animation Step")
+    @Category(CATEGORY)
+    public static class AnimationStep extends Event {
+        @Label("Objects")
+        @Description("Number of moved value-spheres or surface vertices")
+        public int objects;
+
+        @Label("Recolour")
+        public boolean recolour;
+    }
+
+    /**
+     * Extraction of the contour lines of a plot (updateContours)
+     */
+    @Name("vizualizator3d.ContourExtraction")
+    @Label("Contour Extraction")
+    @Category(CATEGORY)
+    public static class ContourExtraction extends Event {
+        @Label("Segments")
+        public int segments;
+
+        @Label("Recomputed Tiles")
+        @Description("Number of tiles whose values changed since the last extraction")
+        public int recomputedTiles;
+
+        @Label("Tiles")
+        public int tiles;
+    }
+}
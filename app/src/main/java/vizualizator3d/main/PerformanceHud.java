@@ -0,0 +1,193 @@
+package vizualizator3d.main;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.layout.StackPane;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * Overlay showing live performance figures of the viewer;
+ * Frame times are measured by an AnimationTimer (one pulse per rendered frame) over a window of the last frames,
+ * costs of evaluation and animation steps are reported by the application, the duration of reading a point-cloud
+ * (parsing or sidecar read, without building its trees) by the loader; The text is refreshed a few times per second,
+ * the timer only runs while the overlay is shown
+ * @author Katarína Osvaldová
+ */
+public class PerformanceHud {
+    /**
+     * Number of frames the FPS and percentiles are computed from
+     */
+    static final int FRAME_WINDOW = 240;
+    /**
+     * Interval between refreshes of the text in nanoseconds
+     */
+    private static final long REFRESH_INTERVAL = 250_000_000;
+    private final IntSupplier nodeCount;
+    private final IntSupplier pointCount;
+    private final Text text = new Text();
+    private final StackPane view = new StackPane(text);
+    /**
+     * Circular buffer of the frame times and a copy of it for sorting
+     */
+    private final long[] frameTimes = new long[FRAME_WINDOW];
+    private final long[] sortedFrameTimes = new long[FRAME_WINDOW];
+    private int frameCount;
+    private int frameIndex;
+    private long lastFrame;
+    private long lastRefresh;
+    /**
+     * Duration and size of the last read of a point-cloud (parsing or sidecar read), loadCached once a cloud was taken
+     * from the cache after it
+     */
+    private long loadTime = -1;
+    private long loadBytes;
+    private boolean loadParsed;
+    private boolean loadCached;
+    private long evaluationTime = -1;
+    private int evaluatedSamples;
+    /**
+     * Sum and count of animation step costs since the last refresh, and their average at the last refresh
+     */
+    private long stepTimeSum;
+    private int stepCount;
+    private double averageStepTime = -1;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (lastFrame != 0) {
+                frameTimes[frameIndex] = now - lastFrame;
+                frameIndex = (frameIndex + 1) % FRAME_WINDOW;
+                frameCount = Math.min(frameCount + 1, FRAME_WINDOW);
+            }
+            lastFrame = now;
+            if (now - lastRefresh >= REFRESH_INTERVAL) {
+                lastRefresh = now;
+                refresh();
+            }
+        }
+    };
+
+    /**
+     * @param nodeCount supplier of the number of nodes of the displayed scene graph, called a few times per second
+     *                  on the JavaFX thread, so it should not walk the graph
+     * @param pointCount supplier of the number of currently displayed points (samples or points of a cloud)
+     */
+    public PerformanceHud(IntSupplier nodeCount, IntSupplier pointCount) {
+        this.nodeCount = nodeCount;
+        this.pointCount = pointCount;
+        text.setFont(Font.font("Monospaced", 12));
+        view.setStyle("-fx-background-color: rgba(255, 255, 255, .75); -fx-padding: 5;");
+        view.setMaxSize(StackPane.USE_PREF_SIZE, StackPane.USE_PREF_SIZE);
+        view.setMouseTransparent(true);
+        view.setVisible(false);
+    }
+
+    /**
+     * @return node of the overlay
+     */
+    public StackPane getView() {
+        return view;
+    }
+
+    /**
+     * Shows or hides the overlay, frame times are only measured while it is shown
+     * @param visible true to show the overlay
+     */
+    public void setVisible(boolean visible) {
+        view.setVisible(visible);
+        if (visible) {
+            frameCount = 0;
+            frameIndex = 0;
+            lastFrame = 0;
+            timer.start();
+        } else {
+            timer.stop();
+        }
+    }
+
+    /**
+     * @param nanos duration of the parsing or of the sidecar read of the last read point-cloud
+     * @param bytes size of the read file
+     * @param parsed true if the text was parsed, false if the sidecar was read
+     */
+    public void recordLoad(long nanos, long bytes, boolean parsed) {
+        loadTime = nanos;
+        loadBytes = bytes;
+        loadParsed = parsed;
+        loadCached = false;
+    }
+
+    /**
+     * Records that the last point-cloud was taken from the cache, without reading any file
+     */
+    public void recordCachedLoad() {
+        loadCached = true;
+    }
+
+    /**
+     * @param nanos duration of the last evaluation of a plot (from the request to the displayed result)
+     * @param samples number of evaluated samples
+     */
+    public void recordEvaluation(long nanos, int samples) {
+        evaluationTime = nanos;
+        evaluatedSamples = samples;
+    }
+
+    /**
+     * @param nanos duration of an animation step
+     */
+    public void recordAnimationStep(long nanos) {
+        stepTimeSum += nanos;
+        stepCount++;
+    }
+
+    private void refresh() {
+        StringBuilder builder = new StringBuilder();
+        if (frameCount > 0) {
+            long span = 0;
+            for (int i = 0; i < frameCount; i++) {
+                sortedFrameTimes[i] = frameTimes[i];
+                span += frameTimes[i];
+            }
+            Arrays.sort(sortedFrameTimes, 0, frameCount);
+            builder.append(format("FPS: %.1f%n", frameCount * 1e9 / span));
+            builder.append(format("Frame ms: p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n",
+                                  percentile(.5), percentile(.95), percentile(.99), sortedFrameTimes[frameCount - 1] / 1e6));
+        }
+        builder.append(format("Nodes: %d%n", nodeCount.getAsInt()));
+        builder.append(format("Points: %d%n", pointCount.getAsInt()));
+        if (loadCached) {
+            builder.append(format("Last load: cached%n"));
+        } else if (loadTime >= 0) {
+            builder.append(format("Last %s: %.1f ms (%.1f MB/s)%n", loadParsed ? "parse" : "sidecar read",
+                                  loadTime / 1e6, loadBytes / 1e6 / (loadTime / 1e9)));
+        }
+        if (evaluationTime >= 0) {
+            builder.append(format("Last evaluation: %.1f ms (%d samples)%n", evaluationTime / 1e6, evaluatedSamples));
+        }
+        if (stepCount > 0) {
+            averageStepTime = (double) stepTimeSum / stepCount;
+            stepTimeSum = 0;
+            stepCount = 0;
+        }
+        if (averageStepTime >= 0) {
+            builder.append(format("Animation step: %.2f ms", averageStepTime / 1e6));
+        }
+        text.setText(builder.toString().trim());
+    }
+
+    /**
+     * @return frame time of the percentile in milliseconds, from the sorted window
+     */
+    private double percentile(double fraction) {
+        int index = (int) Math.ceil(fraction * frameCount) - 1;
+        return sortedFrameTimes[Math.max(0, index)] / 1e6;
+    }
+
+    private static String format(String pattern, Object... arguments) {
+        return String.format(Locale.ROOT, pattern, arguments);
+    }
+}
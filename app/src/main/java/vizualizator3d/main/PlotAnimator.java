@@ -0,0 +1,102 @@
+package vizualizator3d.main;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Time-based animation of transitions of a FunctionGrid to its targets;
+ * A single AnimationTimer interpolates the heights by the elapsed time with ease-in-out easing,
+ * a new transition started while one is running simply retargets from the current heights, jump skips it altogether;
+ * Every frame is one loop over the grid's arrays followed by the render callback
+ * @author Katarína Osvaldová
+ */
+public class PlotAnimator extends AnimationTimer {
+    /**
+     * Displays the interpolated heights of the grid
+     */
+    public interface Frame {
+        /**
+         * @param recolour true if the colours are to be updated as well
+         */
+        void render(boolean recolour);
+    }
+
+    private final long durationNanos;
+    private final Frame frame;
+    private FunctionGrid grid;
+    private long delayNanos;
+    private long startTime;
+    private boolean waitingForFirstFrame;
+    private boolean recolour;
+    private boolean running;
+
+    /**
+     * @param duration duration of a transition in seconds
+     * @param frame callback displaying the heights after every interpolation
+     */
+    public PlotAnimator(double duration, Frame frame) {
+        this.durationNanos = (long) (duration * 1e9);
+        this.frame = frame;
+    }
+
+    /**
+     * Starts a transition of the grid from its current heights to its targets
+     * @param grid grid with already set targets
+     * @param delay seconds by which to delay the transition
+     * @param recolour true if the change of colour during the transition is desired
+     */
+    public void animate(FunctionGrid grid, double delay, boolean recolour) {
+        // a transition being redirected keeps recolouring, its colours would be left half-way otherwise
+        this.recolour = recolour || (running && this.grid == grid && this.recolour);
+        this.grid = grid;
+        delayNanos = (long) (delay * 1e9);
+        waitingForFirstFrame = true;
+        running = true;
+        start();
+    }
+
+    /**
+     * Ends any transition and displays the targets of the grid right away (e.g. while a slider is being dragged)
+     * @param grid grid with already set targets
+     * @param recolour true if the colours are to be updated
+     */
+    public void jump(FunctionGrid grid, boolean recolour) {
+        // an interrupted transition of the grid still needs its colours finished
+        recolour |= running && this.grid == grid && this.recolour;
+        stop();
+        this.grid = grid;
+        grid.interpolate(1);
+        frame.render(recolour);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        super.stop();
+    }
+
+    @Override
+    public void handle(long now) {
+        if (waitingForFirstFrame) {
+            waitingForFirstFrame = false;
+            startTime = now + delayNanos;
+        }
+        if (now < startTime) {
+            return;
+        }
+        double progress = Math.min(1, (double) (now - startTime) / durationNanos);
+        grid.interpolate(ease(progress));
+        frame.render(recolour);
+        if (progress >= 1) {
+            stop();
+        }
+    }
+
+    /**
+     * Ease-in-out (smoothstep) curve
+     * @param progress linear progress, <0, 1>
+     * @return eased progress, <0, 1>
+     */
+    private static double ease(double progress) {
+        return progress * progress * (3 - 2 * progress);
+    }
+}
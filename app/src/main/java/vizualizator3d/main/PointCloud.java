@@ -0,0 +1,199 @@
+package vizualizator3d.main;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Point-cloud model;
+ * Coordinates of all points are stored in a single packed buffer as x0, y0, z0, x1, y1, z1, ...;
+ * The buffer lives outside of the Java heap (a memory-mapped binary sidecar or a direct buffer, see DirectBuffers),
+ * so clouds of tens of millions of points do not grow the heap; It is only accessed by absolute indices
+ * and copied out in bulk; Apart from the points, the cloud knows its bounding box and the normalization mapping it into <-1, 1>
+ * @author Katarína Osvaldová
+ */
+public class PointCloud {
+    private final FloatBuffer coordinates;
+    private final int pointCount;
+
+    /**
+     * Receiver of the points of a cloud while it is being read, in the order of the file
+     */
+    public interface BatchConsumer {
+        /**
+         * @param coordinates packed x, y, z coordinates containing the batch (absolute indices), never modified afterwards
+         * @param offset index of the first point of the batch in coordinates
+         * @param pointCount number of points in the batch
+         * @param progress fraction of the file read so far, <0, 1>
+         */
+        void accept(FloatBuffer coordinates, int offset, int pointCount, double progress);
+    }
+    /**
+     * Bounding box of the points, indexed by axis (0 = x, 1 = y, 2 = z)
+     */
+    private final float[] min;
+    private final float[] max;
+    /**
+     * Normalization: normalized = (coordinate - centre) * scale
+     */
+    private final float[] centre;
+    private final float scale;
+
+    /**
+     * Creates a cloud and computes its bounds and normalization
+     * @param coordinates packed x, y, z coordinates, at least 3*pointCount long
+     * @param pointCount number of points stored in coordinates
+     */
+    public PointCloud(FloatBuffer coordinates, int pointCount) {
+        this.coordinates = coordinates;
+        this.pointCount = pointCount;
+        min = new float[3];
+        max = new float[3];
+        if (pointCount > 0) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = coordinates.get(axis);
+                max[axis] = coordinates.get(axis);
+            }
+        }
+        for (int i = 0; i < 3 * pointCount; i += 3) {
+            for (int axis = 0; axis < 3; axis++) {
+                float value = coordinates.get(i + axis);
+                if (value < min[axis]) {
+                    min[axis] = value;
+                } else if (value > max[axis]) {
+                    max[axis] = value;
+                }
+            }
+        }
+        float[] normalization = normalization(min, max);
+        centre = new float[]{normalization[0], normalization[1], normalization[2]};
+        scale = normalization[3];
+    }
+
+    /**
+     * Computes the normalization of points with the given bounding box;
+     * Clouds already fitting into <-1, 1> are kept as they are, others are centred and scaled down
+     * @param min minimal x, y, z of the points
+     * @param max maximal x, y, z of the points
+     * @return centre x, y, z and scale of the normalization
+     */
+    public static float[] normalization(float[] min, float[] max) {
+        float halfExtent = 0;
+        boolean normalized = true;
+        for (int axis = 0; axis < 3; axis++) {
+            normalized &= min[axis] >= -1 && max[axis] <= 1;
+            halfExtent = Math.max(halfExtent, (max[axis] - min[axis]) / 2);
+        }
+        if (normalized || halfExtent == 0) {
+            return new float[]{0, 0, 0, 1};
+        }
+        return new float[]{(min[0] + max[0]) / 2, (min[1] + max[1]) / 2, (min[2] + max[2]) / 2, 1 / halfExtent};
+    }
+
+    /**
+     * Creates a cloud with already known bounds and normalization (e.g. read from a binary cache file)
+     * @param coordinates packed x, y, z coordinates, at least 3*pointCount long
+     * @param pointCount number of points stored in coordinates
+     * @param min minimal x, y, z of the points
+     * @param max maximal x, y, z of the points
+     * @param centre centre of the normalization
+     * @param scale scale of the normalization
+     */
+    public PointCloud(FloatBuffer coordinates, int pointCount, float[] min, float[] max, float[] centre, float scale) {
+        this.coordinates = coordinates;
+        this.pointCount = pointCount;
+        this.min = min.clone();
+        this.max = max.clone();
+        this.centre = centre.clone();
+        this.scale = scale;
+    }
+
+    /**
+     * @return packed x, y, z coordinates (the buffer may be longer than 3*pointCount), to be accessed by absolute indices
+     */
+    public FloatBuffer getCoordinates() {
+        return coordinates.duplicate();
+    }
+
+    /**
+     * Copies the coordinates of a range of points
+     * @param first index of the first copied point
+     * @param count number of copied points
+     * @param target array receiving the packed x, y, z coordinates
+     * @param offset index in target to copy the first coordinate to
+     */
+    public void copyCoordinates(int first, int count, float[] target, int offset) {
+        coordinates.get(3 * first, target, offset, 3 * count);
+    }
+
+    /**
+     * @return memory taken by the coordinates (off the heap)
+     */
+    public long getByteSize() {
+        return 4L * coordinates.capacity();
+    }
+
+    /**
+     * @return number of points in the cloud
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public float getX(int index) {
+        return coordinates.get(3 * index);
+    }
+
+    public float getY(int index) {
+        return coordinates.get(3 * index + 1);
+    }
+
+    public float getZ(int index) {
+        return coordinates.get(3 * index + 2);
+    }
+
+    /**
+     * @param axis 0 = x, 1 = y, 2 = z
+     * @return minimal coordinate of the points on the axis
+     */
+    public float getMin(int axis) {
+        return min[axis];
+    }
+
+    /**
+     * @param axis 0 = x, 1 = y, 2 = z
+     * @return maximal coordinate of the points on the axis
+     */
+    public float getMax(int axis) {
+        return max[axis];
+    }
+
+    /**
+     * @param axis 0 = x, 1 = y, 2 = z
+     * @return coordinate mapped to 0 by the normalization
+     */
+    public float getNormalizationCentre(int axis) {
+        return centre[axis];
+    }
+
+    /**
+     * @return multiplier of the normalization, 1 for clouds already fitting into <-1, 1>
+     */
+    public float getNormalizationScale() {
+        return scale;
+    }
+
+    /**
+     * Creates a normalized copy of the coordinates in a direct buffer
+     * @param multiplier factor applied after the normalization (e.g. to convert into scene units)
+     * @return packed x, y, z coordinates, (coordinate - centre) * scale * multiplier
+     */
+    public FloatBuffer normalizedCoordinates(float multiplier) {
+        FloatBuffer normalized = DirectBuffers.floats(3L * pointCount);
+        float factor = scale * multiplier;
+        for (int i = 0; i < 3 * pointCount; i += 3) {
+            normalized.put(i, (coordinates.get(i) - centre[0]) * factor);
+            normalized.put(i + 1, (coordinates.get(i + 1) - centre[1]) * factor);
+            normalized.put(i + 2, (coordinates.get(i + 2) - centre[2]) * factor);
+        }
+        return normalized;
+    }
+}
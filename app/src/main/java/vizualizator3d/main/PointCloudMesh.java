@@ -0,0 +1,110 @@
+package vizualizator3d.main;
+
+import javafx.scene.paint.Material;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batched renderer for point-clouds;
+ * Instead of one Sphere node per point, every point is drawn as a small tetrahedron (4 vertices, 4 faces)
+ * and the tetrahedra are packed into a few TriangleMesh chunks, each displayed by a single MeshView;
+ * All chunks share one material, so the colourPickers still recolour the whole cloud at once
+ * @author Katarína Osvaldová
+ */
+public class PointCloudMesh {
+    /**
+     * Number of points packed into one MeshView
+     */
+    public static final int POINTS_PER_CHUNK = 65536;
+    /**
+     * Vertex offsets of a tetrahedron around its centre, scaled by the point radius
+     */
+    private static final float[] TETRAHEDRON_VERTICES = { 1,  1,  1,
+                                                          1, -1, -1,
+                                                         -1,  1, -1,
+                                                         -1, -1,  1};
+    /**
+     * Faces of the tetrahedron as indices into TETRAHEDRON_VERTICES
+     */
+    private static final int[] TETRAHEDRON_FACES = {0, 2, 1,
+                                                    0, 1, 3,
+                                                    0, 3, 2,
+                                                    1, 2, 3};
+    private static final int VERTICES_PER_POINT = TETRAHEDRON_VERTICES.length / 3;
+    private static final int FACES_PER_POINT = TETRAHEDRON_FACES.length / 3;
+
+    private PointCloudMesh() {
+    }
+
+    /**
+     * Packs the points into MeshView chunks of at most POINTS_PER_CHUNK points
+     * @param coordinates packed x, y, z coordinates of the points (already in scene units)
+     * @param pointCount number of points stored in coordinates
+     * @param pointRadius size of a single displayed point
+     * @param material material shared by all chunks
+     * @return list of MeshViews displaying the whole cloud
+     */
+    public static List<MeshView> build(float[] coordinates, int pointCount, float pointRadius, Material material) {
+        List<MeshView> chunks = new ArrayList<>();
+        for (int first = 0; first < pointCount; first += POINTS_PER_CHUNK) {
+            int count = Math.min(POINTS_PER_CHUNK, pointCount - first);
+            MeshView view = new MeshView(buildChunk(coordinates, first, count, pointRadius));
+            view.setMaterial(material);
+            view.setCullFace(CullFace.NONE);
+            chunks.add(view);
+        }
+        return chunks;
+    }
+
+    /**
+     * @param chunks MeshViews created by build
+     * @return memory taken by the vertices and faces of the chunks' meshes
+     */
+    public static long getByteSize(List<MeshView> chunks) {
+        long bytes = 0;
+        for (MeshView chunk : chunks) {
+            TriangleMesh mesh = (TriangleMesh) chunk.getMesh();
+            bytes += 4L * (mesh.getPoints().size() + mesh.getTexCoords().size() + mesh.getFaces().size());
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates a single TriangleMesh containing a tetrahedron for each of count points starting at first
+     * @param coordinates packed x, y, z coordinates of the points
+     * @param first index of the first point of the chunk
+     * @param count number of points in the chunk
+     * @param pointRadius size of a single displayed point
+     * @return mesh of the chunk
+     */
+    private static TriangleMesh buildChunk(float[] coordinates, int first, int count, float pointRadius) {
+        float[] points = new float[count * VERTICES_PER_POINT * 3];
+        int[] faces = new int[count * FACES_PER_POINT * 6];
+        int p = 0;
+        int f = 0;
+        for (int i = 0; i < count; i++) {
+            int c = (first + i) * 3;
+            float x = coordinates[c];
+            float y = coordinates[c + 1];
+            float z = coordinates[c + 2];
+            for (int v = 0; v < TETRAHEDRON_VERTICES.length; v += 3) {
+                points[p++] = x + TETRAHEDRON_VERTICES[v] * pointRadius;
+                points[p++] = y + TETRAHEDRON_VERTICES[v + 1] * pointRadius;
+                points[p++] = z + TETRAHEDRON_VERTICES[v + 2] * pointRadius;
+            }
+            int base = i * VERTICES_PER_POINT;
+            for (int index : TETRAHEDRON_FACES) {
+                faces[f++] = base + index;
+                faces[f++] = 0;
+            }
+        }
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getTexCoords().addAll(0, 0);
+        mesh.getPoints().setAll(points);
+        mesh.getFaces().setAll(faces);
+        return mesh;
+    }
+}
@@ -0,0 +1,55 @@
+package vizualizator3d.main;
+
+import javafx.scene.shape.Sphere;
+import java.util.Arrays;
+
+/**
+ * Pool of value-spheres kept across rebuilds of plots;
+ * A plot rebuilt with a different resolution repositions the spheres it already had and creates only the missing ones;
+ * The pool is trimmed once fewer than half of its spheres are taken, so a single plot of a fine resolution does not
+ * keep its spheres reachable for the rest of the session, and it is released while no spheres are displayed
+ * (surface mode, point-clouds)
+ * @author Katarína Osvaldová
+ */
+public class SpherePool {
+    private final double radius;
+    private Sphere[] spheres = new Sphere[0];
+
+    /**
+     * @param radius radius of created spheres
+     */
+    public SpherePool(double radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * @param count number of required spheres
+     * @return exactly count spheres, the i-th sphere is the same object until the pool is trimmed below i or released
+     */
+    public Sphere[] take(int count) {
+        if (count > spheres.length) {
+            int created = spheres.length;
+            spheres = Arrays.copyOf(spheres, count);
+            for (int i = created; i < count; i++) {
+                spheres[i] = new Sphere(radius);
+            }
+        } else if (count < spheres.length / 2) {
+            spheres = Arrays.copyOf(spheres, count);
+        }
+        return Arrays.copyOf(spheres, count);
+    }
+
+    /**
+     * Drops all spheres of the pool, to be called once none of them is displayed
+     */
+    public void release() {
+        spheres = new Sphere[0];
+    }
+
+    /**
+     * @return number of spheres created so far
+     */
+    public int size() {
+        return spheres.length;
+    }
+}
@@ -0,0 +1,208 @@
+package vizualizator3d.main;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Cache of evaluated function values in square tiles of an absolute lattice, shared by all windows of a plot;
+ * The sample with lattice indices (i, j) lies at ((i + phaseX) * resolution, (j + phaseY) * resolution)
+ * in the coordinates of the function; Only tiles of windows without a phase are cached, so windows shifted by whole
+ * samples share their tiles and panning only evaluates newly exposed tiles; Windows aligned by Lattice.align
+ * (as the plots of MyPlotApp) always have no phase, tiles of other windows are evaluated but not cached, as a window
+ * shifted by a fraction of a sample would hardly ever reuse them;
+ * Values are stored without the zoom, tiles are keyed by the function's identity, the resolution and the tile
+ * coordinates and the least recently used tiles are evicted once the cache exceeds its memory budget
+ * @author Katarína Osvaldová
+ */
+public class TileCache {
+    /**
+     * Number of samples along each side of a tile
+     */
+    public static final int TILE_SIZE = 16;
+    /**
+     * Number of distinguished phases per sample, phases are rounded to multiples of 1 / PHASE_STEPS
+     */
+    static final long PHASE_STEPS = 1L << 30;
+    private static final long TILE_BYTES = 8L * TILE_SIZE * TILE_SIZE;
+    private final long byteBudget;
+    private final Map<Key, double[]> tiles = new LinkedHashMap<>(64, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+            return size() * TILE_BYTES > byteBudget;
+        }
+    };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Identification of a tile
+     */
+    private static final class Key {
+        private final DoubleBinaryOperator function;
+        private final long resolution;
+        private final long tileX, tileY;
+
+        Key(DoubleBinaryOperator function, double resolution, long tileX, long tileY) {
+            this.function = function;
+            this.resolution = Double.doubleToLongBits(resolution);
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return function == key.function && resolution == key.resolution && tileX == key.tileX
+                   && tileY == key.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(function);
+            hash = 31 * hash + Long.hashCode(resolution);
+            hash = 31 * hash + Long.hashCode(tileX);
+            return 31 * hash + Long.hashCode(tileY);
+        }
+    }
+
+    /**
+     * Placement of the samples of a grid window on the absolute lattice
+     */
+    public static class Lattice {
+        private final double resolution;
+        private final long firstColumn, firstRow;
+        private final long phaseX, phaseY;
+
+        /**
+         * @param grid grid whose samples are placed
+         * @param xOffset offset subtracted from x coordinates of the grid
+         * @param yOffset offset subtracted from y coordinates of the grid
+         */
+        public Lattice(FunctionGrid grid, double xOffset, double yOffset) {
+            resolution = grid.getResolution();
+            long[] x = place((grid.getX(0) - xOffset) / resolution);
+            long[] y = place((grid.getY(0) - yOffset) / resolution);
+            firstColumn = x[0];
+            phaseX = x[1];
+            firstRow = y[0];
+            phaseY = y[1];
+        }
+
+        /**
+         * Rounds the offset so that the first sample of a grid lies on the lattice without a phase, the window then
+         * moves by whole samples and shares its tiles with the other windows of the resolution
+         * @param origin coordinate of the first sample of the grid (grid.getX(0) or grid.getY(0))
+         * @param offset offset subtracted from the coordinates
+         * @param resolution resolution of the grid
+         * @return the nearest offset placing the first sample on the lattice (at most half a sample away)
+         */
+        public static double align(double origin, double offset, double resolution) {
+            return origin - Math.round((origin - offset) / resolution) * resolution;
+        }
+
+        /**
+         * @return lattice index of the position and its phase in 1 / PHASE_STEPS
+         */
+        private static long[] place(double position) {
+            long index = (long) Math.floor(position);
+            long phase = Math.round((position - index) * PHASE_STEPS);
+            if (phase == PHASE_STEPS) {
+                index++;
+                phase = 0;
+            }
+            return new long[]{index, phase};
+        }
+
+        /**
+         * @return true if the samples lie on the lattice without a phase, only their tiles are cached
+         */
+        public boolean isAligned() {
+            return phaseX == 0 && phaseY == 0;
+        }
+
+        /**
+         * @return lattice index of the first column of the grid
+         */
+        public long getFirstColumn() {
+            return firstColumn;
+        }
+
+        /**
+         * @return lattice index of the first row of the grid
+         */
+        public long getFirstRow() {
+            return firstRow;
+        }
+    }
+
+    /**
+     * @param byteBudget maximal memory taken by the cached values
+     */
+    public TileCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Returns the values of the tile, evaluating and caching them if they are not cached (tiles of lattices that are
+     * not aligned are always evaluated and never cached); Safe to be called concurrently, the evaluation itself runs
+     * outside of the lock
+     * @param function evaluated function
+     * @param lattice lattice of the tile
+     * @param tileX column of the tile (covering lattice columns [tileX * TILE_SIZE, (tileX + 1) * TILE_SIZE))
+     * @param tileY row of the tile (covering lattice rows [tileY * TILE_SIZE, (tileY + 1) * TILE_SIZE))
+     * @param cancelled checked after each row of samples, once it returns true nothing is cached
+     * @return values of the tile indexed by row * TILE_SIZE + column (without zoom), null if cancelled
+     */
+    public double[] tile(DoubleBinaryOperator function, Lattice lattice, long tileX, long tileY, BooleanSupplier cancelled) {
+        Key key = lattice.isAligned() ? new Key(function, lattice.resolution, tileX, tileY) : null;
+        double[] values = null;
+        if (key != null) {
+            synchronized (tiles) {
+                values = tiles.get(key);
+            }
+        }
+        if (values != null) {
+            hits.incrementAndGet();
+            return values;
+        }
+        misses.incrementAndGet();
+        values = new double[TILE_SIZE * TILE_SIZE];
+        double phaseX = (double) lattice.phaseX / PHASE_STEPS;
+        double phaseY = (double) lattice.phaseY / PHASE_STEPS;
+        for (int row = 0; row < TILE_SIZE; row++) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            double y = (tileY * TILE_SIZE + row + phaseY) * lattice.resolution;
+            for (int column = 0; column < TILE_SIZE; column++) {
+                values[row * TILE_SIZE + column] = function.applyAsDouble((tileX * TILE_SIZE + column + phaseX) * lattice.resolution, y);
+            }
+        }
+        if (key != null) {
+            synchronized (tiles) {
+                tiles.put(key, values);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return number of tile requests served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of tile requests that had to be evaluated
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,25 @@
+package vizualizator3d.main;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Time-dependent function f(x, y, t) of a plot, e.g. a travelling wave, played by FunctionPlayer;
+ * As a DoubleBinaryOperator it is the snapshot of the function at t = 0, so it can be passed wherever
+ * a static function is expected
+ * @author Katarína Osvaldová
+ */
+@FunctionalInterface
+public interface TimeFunction extends DoubleBinaryOperator {
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param t time in seconds since the start of the playback
+     * @return value of the function
+     */
+    double applyAsDouble(double x, double y, double t);
+
+    @Override
+    default double applyAsDouble(double x, double y) {
+        return applyAsDouble(x, y, 0);
+    }
+}
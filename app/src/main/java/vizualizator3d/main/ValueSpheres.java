@@ -0,0 +1,98 @@
+package vizualizator3d.main;
+
+import javafx.scene.shape.Sphere;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Value-spheres displaying samples of a FunctionGrid, the counterpart of HeightfieldMesh for the sphere mode;
+ * The i-th sphere displays the sample samples[i] of the grid and references the palette's material of buckets[i],
+ * so a frame of an animation only moves the spheres and exchanges the materials of the ones whose colour changed
+ * @author Katarína Osvaldová
+ */
+public class ValueSpheres {
+    /**
+     * No spheres at all
+     */
+    public static final ValueSpheres NONE = new ValueSpheres();
+    private final FunctionGrid grid;
+    private final ColourPalette palette;
+    private final Sphere[] spheres;
+    private final int[] samples;
+    private final int[] buckets;
+
+    private ValueSpheres() {
+        grid = null;
+        palette = null;
+        spheres = new Sphere[0];
+        samples = new int[0];
+        buckets = new int[0];
+    }
+
+    /**
+     * Positions the spheres at the samples of the grid and colours them by their heights
+     * @param grid grid to display
+     * @param samples indices of the displayed samples, null for all samples
+     * @param spheres spheres displaying the samples, one per sample (e.g. taken from a SpherePool)
+     * @param palette palette providing the materials
+     * @param spread multiplier of x and y coordinates
+     * @param fraction mapping of a height to its position in the gradient, <0, 1>
+     */
+    public ValueSpheres(FunctionGrid grid, int[] samples, Sphere[] spheres, ColourPalette palette, double spread,
+                        DoubleUnaryOperator fraction) {
+        this.grid = grid;
+        this.palette = palette;
+        this.spheres = spheres;
+        this.samples = new int[spheres.length];
+        buckets = new int[spheres.length];
+        double[] heights = grid.getHeights();
+        int columns = grid.getColumns();
+        for (int i = 0; i < spheres.length; i++) {
+            int sample = (samples == null) ? i : samples[i];
+            Sphere sphere = spheres[i];
+            sphere.setTranslateX(grid.getX(sample % columns) * spread);
+            sphere.setTranslateY(grid.getY(sample / columns) * spread);
+            sphere.setTranslateZ(heights[sample]);
+            this.samples[i] = sample;
+            buckets[i] = palette.bucket(fraction.applyAsDouble(heights[sample]));
+            sphere.setMaterial(palette.getMaterial(buckets[i]));
+        }
+    }
+
+    /**
+     * @return the spheres, in the order of their samples
+     */
+    public Sphere[] getSpheres() {
+        return spheres;
+    }
+
+    /**
+     * @return number of spheres
+     */
+    public int size() {
+        return spheres.length;
+    }
+
+    /**
+     * Moves the spheres to the heights of the grid and optionally updates their colours
+     * @param recolour true if the materials are to be updated
+     * @param fraction mapping of a height to its position in the gradient, <0, 1>
+     */
+    public void update(boolean recolour, DoubleUnaryOperator fraction) {
+        if (spheres.length == 0) {
+            return;
+        }
+        double[] heights = grid.getHeights();
+        for (int i = 0; i < spheres.length; i++) {
+            Sphere sphere = spheres[i];
+            double height = heights[samples[i]];
+            sphere.setTranslateZ(height);
+            if (recolour) {
+                int bucket = palette.bucket(fraction.applyAsDouble(height));
+                if (bucket != buckets[i]) {
+                    buckets[i] = bucket;
+                    sphere.setMaterial(palette.getMaterial(bucket));
+                }
+            }
+        }
+    }
+}
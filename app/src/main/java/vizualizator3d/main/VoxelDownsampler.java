@@ -0,0 +1,390 @@
+package vizualizator3d.main;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Voxel-grid downsampling of point-clouds;
+ * The bounding box of a cloud is divided into cubic voxels and all points of a voxel are replaced by their centroid;
+ * The voxels are aggregated in parallel on the common fork-join pool by hash partitioning: ranges of the points
+ * are scattered into partitions by the hash of their packed voxel coordinates (a primitive long key, no boxing),
+ * then every partition is reduced into its own small open-addressing table, so no tables are merged;
+ * The scattered indices, the tables and the centroids are kept in direct buffers, off the heap;
+ * The size of the voxels is either given or searched for to retain at most a target number of points
+ * @author Katarína Osvaldová
+ */
+public class VoxelDownsampler {
+    /**
+     * Number of points scattered by a single task
+     */
+    static final int SEQUENTIAL_POINTS = 1 << 16;
+    /**
+     * Number of bits of the hash choosing the partition of a voxel, the rest of the hash chooses its slot in the table
+     */
+    private static final int PARTITION_BITS = 6;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    /**
+     * Number of bits of a voxel coordinate in the packed key, limits the number of voxels along an axis
+     */
+    private static final int AXIS_BITS = 21;
+    private static final int MAX_VOXEL_INDEX = (1 << AXIS_BITS) - 1;
+    /**
+     * Number of downsampling passes searching for the voxel size of a target count,
+     * the search ends early once the count is within TARGET_TOLERANCE below the target
+     */
+    private static final int SEARCH_STEPS = 8;
+    private static final double TARGET_TOLERANCE = .9;
+    private static final double STALL_GROWTH = 1.01;
+
+    private VoxelDownsampler() {
+    }
+
+    /**
+     * Downsamples the cloud with voxels of the given size
+     * @param cloud downsampled cloud
+     * @param voxelSize edge of a voxel in the coordinates of the cloud, the cloud is returned as it is if not positive
+     * @return cloud of the centroids of the occupied voxels, with the bounds and normalization of the original cloud
+     */
+    public static PointCloud downsample(PointCloud cloud, float voxelSize) {
+        if (voxelSize <= 0 || cloud.getPointCount() == 0) {
+            return cloud;
+        }
+        return toCloud(cloud, voxelize(cloud, voxelSize));
+    }
+
+    /**
+     * Downsamples the cloud with the voxel size retaining at most (and close to) the target number of points;
+     * Every step of the search is a full downsampling pass, the next voxel size is estimated from the counts of
+     * the previous passes and kept between the largest size retaining too many points and the smallest retaining few enough
+     * @param cloud downsampled cloud
+     * @param targetCount maximal number of retained points, the cloud is returned as it is if it is not larger
+     * @return cloud of the centroids of the occupied voxels, with the bounds and normalization of the original cloud
+     */
+    public static PointCloud downsampleToCount(PointCloud cloud, int targetCount) {
+        int pointCount = cloud.getPointCount();
+        if (pointCount <= targetCount || pointCount == 0) {
+            return cloud;
+        }
+        float extent = getExtent(cloud);
+        // scans are mostly surfaces, so the count is first expected to fall with the square of the voxel size
+        double slope = -2;
+        double voxelSize = extent / Math.sqrt(Math.max(1, targetCount));
+        double tooSmall = 0;
+        double largeEnough = Double.POSITIVE_INFINITY;
+        Voxels best = null;
+        double previousSize = 0;
+        int previousCount = pointCount;
+        for (int step = 0; step < SEARCH_STEPS || best == null; step++) {
+            Voxels voxels = voxelize(cloud, (float) voxelSize);
+            int count = voxels.size;
+            if (count <= targetCount) {
+                largeEnough = Math.min(largeEnough, voxelSize);
+                if (best == null || count > best.size) {
+                    best = voxels;
+                }
+                // no closer count exists if smaller voxels hardly separated any more points (e.g. duplicate points)
+                if (count >= TARGET_TOLERANCE * targetCount || (count < STALL_GROWTH * previousCount && voxelSize < previousSize)
+                    || voxelSize <= extent / MAX_VOXEL_INDEX) {
+                    break;
+                }
+            } else {
+                tooSmall = Math.max(tooSmall, voxelSize);
+            }
+            if (previousSize > 0 && count != previousCount && voxelSize != previousSize) {
+                slope = Math.min(-.5, (Math.log(count) - Math.log(previousCount)) / (Math.log(voxelSize) - Math.log(previousSize)));
+            }
+            previousSize = voxelSize;
+            previousCount = count;
+            // aim slightly below the target, so that the estimate tends to land within the tolerance
+            double target = (1 + TARGET_TOLERANCE) / 2 * targetCount;
+            voxelSize = voxelSize * Math.exp((Math.log(target) - Math.log(count)) / slope);
+            if (voxelSize <= tooSmall || voxelSize >= largeEnough) {
+                if (largeEnough == Double.POSITIVE_INFINITY) {
+                    voxelSize = 2 * tooSmall;
+                } else if (tooSmall == 0) {
+                    voxelSize = largeEnough / 2;
+                } else {
+                    voxelSize = Math.sqrt(tooSmall * largeEnough);
+                }
+            }
+        }
+        return toCloud(cloud, best);
+    }
+
+    /**
+     * @param cloud measured cloud
+     * @return largest side of the bounding box of the cloud
+     */
+    public static float getExtent(PointCloud cloud) {
+        float extent = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            extent = Math.max(extent, cloud.getMax(axis) - cloud.getMin(axis));
+        }
+        return extent;
+    }
+
+    /**
+     * Bins all points of the cloud into voxels of the given size, the voxel is enlarged if the cloud would span
+     * more voxels along an axis than a key can hold;
+     * -> the keys of every range of points are counted per partition;
+     * -> the indices of the points are scattered into the partitions (each range into its own part of every partition);
+     * -> every partition is reduced into its table
+     */
+    private static Voxels voxelize(PointCloud cloud, float voxelSize) {
+        float size = Math.max(voxelSize, getExtent(cloud) / MAX_VOXEL_INDEX);
+        KeyFunction keys = new KeyFunction(cloud, size > 0 ? 1 / size : 1);
+        FloatBuffer coordinates = cloud.getCoordinates();
+        int pointCount = cloud.getPointCount();
+        int ranges = (pointCount + SEQUENTIAL_POINTS - 1) / SEQUENTIAL_POINTS;
+        // counts of the partitions per range, turned into the positions the range scatters to
+        int[][] positions = new int[ranges][PARTITIONS];
+        forEach(ranges, range -> {
+            int[] counts = positions[range];
+            for (int point = range * SEQUENTIAL_POINTS; point < Math.min(pointCount, (range + 1) * SEQUENTIAL_POINTS); point++) {
+                counts[partition(keys.key(coordinates, point))]++;
+            }
+        });
+        int[] partitionStarts = new int[PARTITIONS + 1];
+        int position = 0;
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitionStarts[partition] = position;
+            for (int range = 0; range < ranges; range++) {
+                int count = positions[range][partition];
+                positions[range][partition] = position;
+                position += count;
+            }
+        }
+        partitionStarts[PARTITIONS] = position;
+        IntBuffer order = DirectBuffers.ints(pointCount);
+        forEach(ranges, range -> {
+            int[] next = positions[range];
+            for (int point = range * SEQUENTIAL_POINTS; point < Math.min(pointCount, (range + 1) * SEQUENTIAL_POINTS); point++) {
+                order.put(next[partition(keys.key(coordinates, point))]++, point);
+            }
+        });
+        VoxelTable[] tables = new VoxelTable[PARTITIONS];
+        forEach(PARTITIONS, partition -> {
+            int from = partitionStarts[partition];
+            int to = partitionStarts[partition + 1];
+            VoxelTable table = new VoxelTable(Math.min(to - from, 1 << 12));
+            for (int i = from; i < to; i++) {
+                int point = order.get(i);
+                table.add(keys.key(coordinates, point), coordinates.get(3 * point), coordinates.get(3 * point + 1),
+                          coordinates.get(3 * point + 2));
+            }
+            tables[partition] = table;
+        });
+        return new Voxels(tables);
+    }
+
+    private static int partition(long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> (64 - PARTITION_BITS));
+    }
+
+    /**
+     * Runs the body for the indices [0, count) in parallel on the common fork-join pool
+     */
+    private static void forEach(int count, IntConsumer body) {
+        ForkJoinPool.commonPool().invoke(new RangeTask(0, count, body));
+    }
+
+    /**
+     * Creates the cloud of the centroids of the voxels
+     */
+    private static PointCloud toCloud(PointCloud cloud, Voxels voxels) {
+        FloatBuffer coordinates = DirectBuffers.floats(3L * voxels.size);
+        int offset = 0;
+        for (VoxelTable table : voxels.tables) {
+            offset = table.centroids(coordinates, offset);
+        }
+        float[] min = new float[3];
+        float[] max = new float[3];
+        float[] centre = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            min[axis] = cloud.getMin(axis);
+            max[axis] = cloud.getMax(axis);
+            centre[axis] = cloud.getNormalizationCentre(axis);
+        }
+        return new PointCloud(coordinates, voxels.size, min, max, centre, cloud.getNormalizationScale());
+    }
+
+    /**
+     * Tables of all partitions of a voxelization and the total number of voxels in them
+     */
+    private static class Voxels {
+        private final VoxelTable[] tables;
+        private final int size;
+
+        Voxels(VoxelTable[] tables) {
+            this.tables = tables;
+            int size = 0;
+            for (VoxelTable table : tables) {
+                size += table.size();
+            }
+            this.size = size;
+        }
+    }
+
+    /**
+     * Packs the voxel coordinates of points into keys, AXIS_BITS bits per axis
+     */
+    private static class KeyFunction {
+        private final float minX, minY, minZ;
+        private final float inverseSize;
+
+        KeyFunction(PointCloud cloud, float inverseSize) {
+            minX = cloud.getMin(0);
+            minY = cloud.getMin(1);
+            minZ = cloud.getMin(2);
+            this.inverseSize = inverseSize;
+        }
+
+        long key(FloatBuffer coordinates, int point) {
+            return ((long) voxelIndex(coordinates.get(3 * point) - minX) << (2 * AXIS_BITS))
+                   | ((long) voxelIndex(coordinates.get(3 * point + 1) - minY) << AXIS_BITS)
+                   | voxelIndex(coordinates.get(3 * point + 2) - minZ);
+        }
+
+        private int voxelIndex(float offset) {
+            return Math.min(MAX_VOXEL_INDEX, Math.max(0, (int) (offset * inverseSize)));
+        }
+    }
+
+    /**
+     * Task running the body for the indices [from, to), splitting them in halves down to single indices
+     */
+    private static class RangeTask extends RecursiveAction {
+        private final int from, to;
+        private final IntConsumer body;
+
+        RangeTask(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    body.accept(from);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, body), new RangeTask(middle, to, body));
+        }
+    }
+
+    /**
+     * Open-addressing hash table (linear probing) from packed voxel keys of a partition to the sums of the coordinates
+     * and the number of points in the voxel; The slots are kept in direct buffers, keys are stored increased by one,
+     * so the zeroed memory of a new buffer marks empty slots; The sums and the count of a slot are stored next to each
+     * other, so adding a point touches two cache lines at most
+     */
+    static class VoxelTable {
+        private static final long EMPTY = 0;
+        private LongBuffer keys;
+        /**
+         * Sum of x, y, z and the number of points of every slot
+         */
+        private DoubleBuffer cells;
+        private int capacity;
+        private int size;
+        private int shift;
+
+        /**
+         * @param expectedSize expected number of voxels, the table grows if it is exceeded
+         */
+        VoxelTable(int expectedSize) {
+            allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize)) << 1));
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            keys = DirectBuffers.longs(capacity);
+            cells = DirectBuffers.doubles(4L * capacity);
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            size = 0;
+        }
+
+        /**
+         * @return number of occupied voxels
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Adds a point to its voxel
+         * @param key packed voxel coordinates
+         */
+        void add(long key, double x, double y, double z) {
+            add(key, x, y, z, 1);
+        }
+
+        private void add(long key, double x, double y, double z, double count) {
+            int mask = capacity - 1;
+            long stored = key + 1;
+            // the top bits of the hash chose the partition, the slot is taken from the following ones
+            int slot = (int) (((key * HASH_MULTIPLIER) << PARTITION_BITS) >>> shift);
+            while (keys.get(slot) != stored) {
+                if (keys.get(slot) == EMPTY) {
+                    if (2 * (size + 1) > capacity) {
+                        grow();
+                        add(key, x, y, z, count);
+                        return;
+                    }
+                    keys.put(slot, stored);
+                    size++;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int cell = 4 * slot;
+            cells.put(cell, cells.get(cell) + x);
+            cells.put(cell + 1, cells.get(cell + 1) + y);
+            cells.put(cell + 2, cells.get(cell + 2) + z);
+            cells.put(cell + 3, cells.get(cell + 3) + count);
+        }
+
+        private void grow() {
+            LongBuffer oldKeys = keys;
+            DoubleBuffer oldCells = cells;
+            int oldCapacity = capacity;
+            allocate(2 * oldCapacity);
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                if (oldKeys.get(slot) != EMPTY) {
+                    int cell = 4 * slot;
+                    add(oldKeys.get(slot) - 1, oldCells.get(cell), oldCells.get(cell + 1), oldCells.get(cell + 2),
+                        oldCells.get(cell + 3));
+                }
+            }
+        }
+
+        /**
+         * Writes the centroids of the voxels as packed x, y, z coordinates
+         * @param centroids target buffer
+         * @param offset index in centroids to write the first coordinate to
+         * @return index in centroids after the last written coordinate
+         */
+        int centroids(FloatBuffer centroids, int offset) {
+            for (int slot = 0; slot < capacity; slot++) {
+                if (keys.get(slot) != EMPTY) {
+                    int cell = 4 * slot;
+                    double count = cells.get(cell + 3);
+                    centroids.put(offset++, (float) (cells.get(cell) / count));
+                    centroids.put(offset++, (float) (cells.get(cell + 1) / count));
+                    centroids.put(offset++, (float) (cells.get(cell + 2) / count));
+                }
+            }
+            return offset;
+        }
+    }
+}
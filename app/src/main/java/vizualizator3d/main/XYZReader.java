@@ -0,0 +1,356 @@
+package vizualizator3d.main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reader of point-clouds in .xyz format;
+ * The file is memory-mapped, split into chunks at newline boundaries and the chunks are parsed in parallel
+ * on the common fork-join pool, reading the numbers straight from the mapped bytes into float arrays;
+ * The parsed chunks are copied in order into a direct buffer of the cloud (sized by the density of the chunks parsed
+ * so far) and dropped; At most CHUNKS_PER_THREAD chunks per thread of the pool are in flight, the next chunk
+ * is submitted as each one is copied, so the heap holds a bounded number of chunks however large the file is;
+ * Parsed points can be streamed to a consumer in batches, in the order of the file, while later chunks are still parsed;
+ * Each line is expected to contain three numbers separated by whitespace and/or a comma,
+ * numbers may use exponent notation (1.5E-3); lines not matching this format (comments, headers) are skipped
+ * @author Katarína Osvaldová
+ */
+public class XYZReader {
+    /**
+     * Nominal number of bytes parsed by a single task
+     */
+    static final int CHUNK_SIZE = 4 << 20;
+    /**
+     * Number of bytes of the first chunk, kept small so that the first batch of points is available quickly
+     */
+    static final int FIRST_CHUNK_SIZE = 512 << 10;
+    /**
+     * Number of bytes mapped past the end of a chunk, so that its last line can be finished
+     */
+    static final int MAX_LINE_LENGTH = 4096;
+    /**
+     * Number of chunks per thread of the common pool submitted ahead of the chunk being copied
+     */
+    static final int CHUNKS_PER_THREAD = 2;
+    /**
+     * Maximal number of points handed to a batch consumer at once
+     */
+    public static final int BATCH_POINTS = 50_000;
+    /**
+     * Exactly representable powers of ten for the fast conversion path
+     */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                                   1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * Mantissas above this limit are not extended any more, the remaining digits only shift the exponent
+     */
+    private static final long MANTISSA_LIMIT = 100_000_000_000_000_000L;
+
+    private XYZReader() {
+    }
+
+    /**
+     * Reads all points from the file
+     * @param path path to the .xyz file
+     * @return parsed point-cloud, points are in the same order as in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static PointCloud read(Path path) throws IOException {
+        return read(path, (coordinates, offset, pointCount, progress) -> {}, () -> false);
+    }
+
+    /**
+     * Reads all points from the file, handing them to the consumer in batches of at most BATCH_POINTS points
+     * as soon as the chunks containing them are parsed (chunks are still parsed in parallel, but handed over in order)
+     * @param path path to the .xyz file
+     * @param consumer receiver of the batches, called on the reading thread
+     * @param cancelled checked before each batch, once it returns true the reading stops
+     * @return parsed point-cloud, points are in the same order as in the file
+     * @throws IOException if the file cannot be read
+     * @throws CancellationException if the reading was cancelled
+     */
+    public static PointCloud read(Path path, PointCloud.BatchConsumer consumer, BooleanSupplier cancelled) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> starts = new ArrayList<>();
+            for (long start = 0; start < size; ) {
+                starts.add(start);
+                start = Math.min(size, start + ((start == 0) ? FIRST_CHUNK_SIZE : CHUNK_SIZE));
+            }
+            starts.add(size);
+            int chunkCount = starts.size() - 1;
+            int inFlight = CHUNKS_PER_THREAD * ForkJoinPool.commonPool().getParallelism();
+            Deque<Future<Chunk>> results = new ArrayDeque<>();
+            int submitted = 0;
+
+            FloatBuffer coordinates = DirectBuffers.floats(0);
+            int pointCount = 0;
+            try {
+                for (int c = 0; c < chunkCount; c++) {
+                    for (; submitted < chunkCount && submitted < c + inFlight; submitted++) {
+                        long chunkStart = starts.get(submitted);
+                        long chunkEnd = starts.get(submitted + 1);
+                        results.add(ForkJoinPool.commonPool()
+                                                .submit(() -> parseChunk(channel, chunkStart, chunkEnd, size)));
+                    }
+                    // the chunk is dropped as soon as it is copied
+                    Chunk chunk = results.poll().get();
+                    long chunkStart = starts.get(c);
+                    long chunkEnd = starts.get(c + 1);
+                    if (3L * (pointCount + chunk.count) > coordinates.capacity()) {
+                        // the rest of the file is expected as dense as the file so far, with a little reserve
+                        double pointsPerByte = (double) (pointCount + chunk.count) / chunkEnd;
+                        long expected = pointCount + chunk.count + (long) (1.05 * pointsPerByte * (size - chunkEnd)) + 1024;
+                        coordinates = grow(coordinates, pointCount, expected);
+                    }
+                    coordinates.put(3 * pointCount, chunk.coordinates, 0, 3 * chunk.count);
+                    for (int offset = 0; offset < chunk.count; offset += BATCH_POINTS) {
+                        if (cancelled.getAsBoolean()) {
+                            throw new CancellationException("Reading of " + path + " was cancelled");
+                        }
+                        int count = Math.min(BATCH_POINTS, chunk.count - offset);
+                        double progress = (chunkStart + (chunkEnd - chunkStart) * (double) (offset + count) / chunk.count) / size;
+                        consumer.accept(coordinates, pointCount + offset, count, progress);
+                    }
+                    pointCount += chunk.count;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Reading of " + path + " was interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Reading of " + path + " failed", e.getCause());
+            } finally {
+                // chunks not needed any more (after a failure or cancellation) are not parsed
+                for (Future<Chunk> result : results) {
+                    result.cancel(false);
+                }
+            }
+            return new PointCloud(coordinates, pointCount);
+        }
+    }
+
+    /**
+     * Moves the points into a larger direct buffer; the old buffer is left unchanged (batches may still refer to it)
+     * @param coordinates buffer of the points so far
+     * @param pointCount number of points in it
+     * @param capacity number of points the new buffer holds
+     * @return new buffer
+     */
+    private static FloatBuffer grow(FloatBuffer coordinates, int pointCount, long capacity) {
+        FloatBuffer grown = DirectBuffers.floats(3 * capacity);
+        grown.put(0, coordinates, 0, 3 * pointCount);
+        return grown;
+    }
+
+    /**
+     * Maps and parses all lines starting within [start, end) of the file
+     * @param channel channel of the file
+     * @param start first byte of the chunk
+     * @param end first byte after the chunk
+     * @param size size of the whole file
+     * @return points parsed from the chunk
+     * @throws IOException if the chunk cannot be mapped
+     */
+    static Chunk parseChunk(FileChannel channel, long start, long end, long size) throws IOException {
+        long mapStart = Math.max(0, start - 1);
+        long mapEnd = Math.min(size, end + MAX_LINE_LENGTH);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        LineParser parser = new LineParser(buffer);
+        Chunk chunk = new Chunk((int) (end - start) / 8);
+
+        int position = (int) (start - mapStart);
+        int limit = (int) (end - mapStart);
+        if (start > 0 && buffer.get(0) != '\n') {
+            // the line started in the previous chunk, it is parsed there
+            while (position < buffer.limit() && buffer.get(position) != '\n') {
+                position++;
+            }
+            position++;
+        }
+        while (position < limit) {
+            int lineEnd = position;
+            while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            boolean truncated = lineEnd == buffer.limit() && mapEnd < size;
+            if (!truncated && parser.parseLine(position, lineEnd)) {
+                chunk.add(parser.x, parser.y, parser.z);
+            }
+            position = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Growable packed coordinate array of a single chunk
+     */
+    static class Chunk {
+        float[] coordinates;
+        int count;
+
+        Chunk(int initialCapacity) {
+            coordinates = new float[3 * Math.max(16, initialCapacity)];
+        }
+
+        void add(float x, float y, float z) {
+            if (3 * count == coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+            }
+            coordinates[3 * count] = x;
+            coordinates[3 * count + 1] = y;
+            coordinates[3 * count + 2] = z;
+            count++;
+        }
+    }
+
+    /**
+     * Parser of single lines of a byte buffer;
+     * The result of the last successfully parsed line is kept in x, y, z so that no objects are created per line
+     */
+    static class LineParser {
+        private final ByteBuffer buffer;
+        private int position;
+        private double value;
+        float x, y, z;
+
+        LineParser(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Parses three numbers from the line [from, to)
+         * @param from first byte of the line
+         * @param to first byte after the line (without the newline)
+         * @return true if the line contains exactly three numbers
+         */
+        boolean parseLine(int from, int to) {
+            position = from;
+            skipWhitespace(to);
+            if (!parseNumber(to)) {
+                return false;
+            }
+            x = (float) value;
+            skipSeparator(to);
+            if (!parseNumber(to)) {
+                return false;
+            }
+            y = (float) value;
+            skipSeparator(to);
+            if (!parseNumber(to)) {
+                return false;
+            }
+            z = (float) value;
+            skipWhitespace(to);
+            return position == to;
+        }
+
+        private void skipSeparator(int to) {
+            if (position < to && buffer.get(position) == ',') {
+                position++;
+            }
+            skipWhitespace(to);
+        }
+
+        private void skipWhitespace(int to) {
+            while (position < to) {
+                byte c = buffer.get(position);
+                if (c != ' ' && c != '\t' && c != '\r' && c != '\f' && c != 0x0B) {
+                    return;
+                }
+                position++;
+            }
+        }
+
+        /**
+         * Parses a decimal number with optional sign, fraction and exponent into value
+         * @param to first byte after the line
+         * @return true if a number was found at the current position
+         */
+        private boolean parseNumber(int to) {
+            boolean negative = false;
+            if (position < to && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int exponent = 0;
+            boolean anyDigit = false;
+            byte c;
+            while (position < to && (c = buffer.get(position)) >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa < MANTISSA_LIMIT) {
+                    mantissa = mantissa * 10 + (c - '0');
+                } else {
+                    exponent++;
+                }
+                position++;
+            }
+            if (position < to && buffer.get(position) == '.') {
+                position++;
+                while (position < to && (c = buffer.get(position)) >= '0' && c <= '9') {
+                    anyDigit = true;
+                    if (mantissa < MANTISSA_LIMIT) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        exponent--;
+                    }
+                    position++;
+                }
+            }
+            if (!anyDigit) {
+                return false;
+            }
+            if (position < to && (buffer.get(position) == 'E' || buffer.get(position) == 'e')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < to && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                    negativeExponent = buffer.get(position) == '-';
+                    position++;
+                }
+                int explicitExponent = 0;
+                while (position < to && (c = buffer.get(position)) >= '0' && c <= '9') {
+                    if (explicitExponent < 10000) {
+                        explicitExponent = explicitExponent * 10 + (c - '0');
+                    }
+                    position++;
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+            }
+            value = toDouble(mantissa, exponent);
+            if (negative) {
+                value = -value;
+            }
+            return true;
+        }
+
+        /**
+         * @return mantissa * 10^exponent, exact whenever both factors are exactly representable
+         */
+        private static double toDouble(long mantissa, int exponent) {
+            if (mantissa == 0) {
+                return 0;
+            }
+            if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+                return (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            }
+            return mantissa * Math.pow(10, exponent);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package vizualizator3d.main;
+
+import org.junit.jupiter.api.Test;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of ExpressionCompiler: the grammar, constant folding and the limits of the expressions
+ * @author Katarína Osvaldová
+ */
+class ExpressionCompilerTest {
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+    private double evaluate(String source, double x, double y) {
+        return compiler.compile(source).applyAsDouble(x, y);
+    }
+
+    @Test
+    void precedence() {
+        assertEquals(7, evaluate("1+2*3", 0, 0));
+        assertEquals(9, evaluate("(1+2)*3", 0, 0));
+        assertEquals(7, evaluate("x+y*2", 1, 3));
+        assertEquals(18, evaluate("2*x^2", 3, 0));
+        assertEquals(3, evaluate("x*y-y/2", 2, 2));
+        // + - and * / are left-associative
+        assertEquals(2, evaluate("x-y-1", 5, 2));
+        assertEquals(2, evaluate("x/y/2", 8, 2));
+    }
+
+    @Test
+    void powerIsRightAssociative() {
+        assertEquals(512, evaluate("2^3^2", 0, 0));
+        assertEquals(512, evaluate("x^y^2", 2, 3));
+        assertEquals(64, evaluate("(x^y)^2", 2, 3));
+    }
+
+    @Test
+    void unaryMinus() {
+        assertEquals(-9, evaluate("-x^2", 3, 0));
+        assertEquals(-4, evaluate("-2^2", 0, 0));
+        assertEquals(.5, evaluate("2^-1", 0, 0));
+        assertEquals(.125, evaluate("x^-y", 2, 3));
+        assertEquals(3, evaluate("--x", 3, 0));
+        assertEquals(-6, evaluate("x*-y", 2, 3));
+        assertEquals(1, evaluate("x - -y", -2, 3));
+    }
+
+    @Test
+    void functionsAndConstants() {
+        assertEquals(Math.sin(Math.sqrt(13)) * Math.exp(-.5), evaluate("sin(sqrt(x^2+y^2))*exp(-x/4)", 2, 3));
+        assertEquals(Math.atan2(3, 2), evaluate("ATAN2(y, x)", 2, 3));
+        assertEquals(Math.PI * Math.E, evaluate("pi*e", 0, 0));
+        assertEquals(2e-3, evaluate("2e-3", 0, 0));
+    }
+
+    @Test
+    void nanConstantsAreFolded() {
+        assertTrue(Double.isNaN(evaluate("0/0", 1, 1)));
+        assertTrue(Double.isNaN(evaluate("sqrt(-1)", 1, 1)));
+        assertTrue(Double.isNaN(evaluate("-(0/0)", 1, 1)));
+        assertTrue(Double.isNaN(evaluate("(0/0)^2", 1, 1)));
+        assertTrue(Double.isNaN(evaluate("2*sqrt(-1)+1", 1, 1)));
+        assertTrue(Double.isNaN(evaluate("x+0/0", 1, 1)));
+        assertTrue(Double.isNaN(evaluate("y*sqrt(-1)", 1, 1)));
+        // NaN^0 is 1, folded like Math.pow evaluates it
+        assertEquals(1, evaluate("pow(0/0, 0)", 1, 1));
+        assertEquals(1, evaluate("(0/0)^0", 1, 1));
+    }
+
+    @Test
+    void timeDependentExpression() {
+        DoubleBinaryOperator function = compiler.compile("x+y*t");
+        assertInstanceOf(TimeFunction.class, function);
+        assertEquals(7, ((TimeFunction) function).applyAsDouble(1, 2, 3));
+    }
+
+    @Test
+    void cacheKeepsRecentExpressions() {
+        DoubleBinaryOperator first = compiler.compile("x + y");
+        assertSame(first, compiler.compile("X+Y"));
+        for (int i = 0; i < ExpressionCompiler.CACHE_SIZE; i++) {
+            compiler.compile("x*" + i);
+        }
+        assertNotSame(first, compiler.compile("x+y"));
+    }
+
+    @Test
+    void tooManyTokens() {
+        // x followed by (MAX_TOKENS - 1) / 2 times +x has MAX_TOKENS tokens
+        assertEquals((ExpressionCompiler.MAX_TOKENS - 1) / 2 + 1,
+                     evaluate("x" + "+x".repeat((ExpressionCompiler.MAX_TOKENS - 1) / 2), 1, 0));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> compiler.compile(
+                "x" + "+x".repeat(ExpressionCompiler.MAX_TOKENS / 2)));
+        assertTrue(error.getMessage().contains(ExpressionCompiler.MAX_TOKENS + " tokens"), error.getMessage());
+    }
+
+    @Test
+    void tooDeeplyNested() {
+        // every parenthesis passes through one unary rule, the outermost expression through another one
+        int depth = ExpressionCompiler.MAX_DEPTH;
+        assertEquals(1, evaluate("(".repeat(depth - 1) + "x" + ")".repeat(depth - 1), 1, 0));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> compiler.compile(
+                "(".repeat(depth) + "x" + ")".repeat(depth)));
+        assertTrue(error.getMessage().contains(depth + " levels"), error.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("-".repeat(depth) + "x"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("x" + "^x".repeat(depth)));
+    }
+
+    @Test
+    void invalidExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile(""));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("x+"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("foo(x)"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("pow(x)"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("(x"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("1..2"));
+    }
+}
@@ -0,0 +1,93 @@
+package vizualizator3d.main;
+
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of XYZReader.LineParser against the line format of the former regex-based reader
+ * @author Katarína Osvaldová
+ */
+class XYZReaderTest {
+    /**
+     * Pattern the lines of .xyz files were matched with before XYZReader, the values were Double.parseDouble(group)
+     */
+    private static final Pattern REGEX = Pattern.compile(
+            "\\s*(-?\\d+\\.\\d*E?-?\\+?\\d*),?\\s*(-?\\d+\\.\\d*E?-?\\+?\\d*),?\\s*(-?\\d+\\.\\d*E?-?\\+?\\d*)\\s*");
+    private static final String[] SEPARATORS = {" ", "  ", "\t", ",", ", ", ",\t", " \t "};
+    private static final String[] EXPONENTS = {"", "", "E5", "E-3", "E+12", "E-38", "E0"};
+
+    /**
+     * @return parser holding the numbers of the line, null if the line is skipped
+     */
+    private static XYZReader.LineParser parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        XYZReader.LineParser parser = new XYZReader.LineParser(ByteBuffer.wrap(bytes));
+        return parser.parseLine(0, bytes.length) ? parser : null;
+    }
+
+    private static String number(Random random) {
+        StringBuilder number = new StringBuilder();
+        if (random.nextBoolean()) {
+            number.append('-');
+        }
+        number.append(random.nextInt(100_000)).append('.');
+        int decimals = random.nextInt(9);
+        for (int i = 0; i < decimals; i++) {
+            number.append(random.nextInt(10));
+        }
+        return number.append(EXPONENTS[random.nextInt(EXPONENTS.length)]).toString();
+    }
+
+    @Test
+    void parsesLinesOfTheRegexFormatToTheSameFloats() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String line = (random.nextBoolean() ? "" : " ") + number(random)
+                          + SEPARATORS[random.nextInt(SEPARATORS.length)] + number(random)
+                          + SEPARATORS[random.nextInt(SEPARATORS.length)] + number(random)
+                          + (random.nextBoolean() ? "" : "\r");
+            Matcher matcher = REGEX.matcher(line);
+            assertTrue(matcher.matches(), line);
+            XYZReader.LineParser parser = parse(line);
+            assertNotNull(parser, line);
+            assertEquals((float) Double.parseDouble(matcher.group(1)), parser.x, line);
+            assertEquals((float) Double.parseDouble(matcher.group(2)), parser.y, line);
+            assertEquals((float) Double.parseDouble(matcher.group(3)), parser.z, line);
+        }
+    }
+
+    @Test
+    void parsesNumbersWithoutADecimalPoint() {
+        XYZReader.LineParser parser = parse("+1 .5 -3e2");
+        assertNotNull(parser);
+        assertEquals(1f, parser.x);
+        assertEquals(.5f, parser.y);
+        assertEquals(-300f, parser.z);
+    }
+
+    @Test
+    void parsesLongMantissas() {
+        XYZReader.LineParser parser = parse("0.1234567890123456789012 12345678901234567890123.0 1.5E-400");
+        assertNotNull(parser);
+        assertEquals((float) 0.1234567890123456789012, parser.x);
+        assertEquals((float) 12345678901234567890123.0, parser.y);
+        assertEquals(0f, parser.z);
+    }
+
+    @Test
+    void skipsLinesOfOtherFormats() {
+        for (String line : new String[]{"", "   ", "# x y z", "x,y,z", "1.0 2.0", "1.0 2.0 3.0 4.0", "1.0;2.0;3.0",
+                                        "1.0,,2.0,3.0", "1.0 2.0 3.0 # comment", "- 1.0 2.0", "1.0 2.0 e5"}) {
+            assertNull(parse(line), line);
+        }
+    }
+}
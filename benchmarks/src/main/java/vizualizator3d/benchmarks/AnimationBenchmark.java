@@ -0,0 +1,77 @@
+package vizualizator3d.benchmarks;
+
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.ColourPalette;
+import vizualizator3d.main.ExampleFunctions;
+import vizualizator3d.main.HeightfieldMesh;
+import vizualizator3d.main.SpherePool;
+import vizualizator3d.main.ValueSpheres;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Cost of one frame of the animated transition (animationStep) with recolouring, for value-spheres and for the surface;
+ * The frame interpolates the heights of the grid and moves (and recolours) the displayed objects through the same
+ * ValueSpheres.update and HeightfieldMesh.update calls as the application;
+ * The transition runs between zero heights and the values of Function2, the JavaFX objects are never rendered
+ * (the software pipeline is selected so that they can be created without a graphics device)
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@State(Scope.Thread)
+public class AnimationBenchmark {
+    private ValueSpheres spheres;
+    private HeightfieldMesh heightfield;
+    private DoubleUnaryOperator fraction;
+    private double progress;
+
+    @Setup(Level.Trial)
+    public void createScene(GridState state) {
+        state.grid.setTargets(new double[state.grid.size()], 0, 0);
+        state.grid.interpolate(1);
+        state.grid.evaluate(ExampleFunctions.getAll().get("Function2"), 0, 0, 1);
+        double max = state.grid.getMaxValue();
+        double difference = state.grid.getMinValue() - max;
+        fraction = value -> ColourPalette.fraction(value, max, difference);
+        ColourPalette palette = new ColourPalette(ColourPalette.DEFAULT_SIZE, Color.BLUE, Color.RED);
+        spheres = new ValueSpheres(state.grid, null, new SpherePool(.1).take(state.grid.size()), palette, 2, fraction);
+        heightfield = new HeightfieldMesh(state.grid, palette, 2);
+    }
+
+    /**
+     * @return next point of the transition, cycling through 0 to 1
+     */
+    private double nextProgress() {
+        progress = (progress >= 1) ? 0 : progress + .01;
+        return progress;
+    }
+
+    @Benchmark
+    public ValueSpheres spheres(GridState state) {
+        state.grid.interpolate(nextProgress());
+        spheres.update(true, fraction);
+        return spheres;
+    }
+
+    @Benchmark
+    public HeightfieldMesh surface(GridState state) {
+        state.grid.interpolate(nextProgress());
+        heightfield.update(true, fraction);
+        return heightfield;
+    }
+}
@@ -0,0 +1,24 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar;
+ * Runs JMH with the given command line (e.g. a regexp of benchmarks and -p resolution=0.05) and always adds
+ * the GC profiler, so that every benchmark reports its allocation rate (gc.alloc.rate.norm) next to its throughput
+ * @author Katarína Osvaldová
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+            || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.BinaryCloudFile;
+import vizualizator3d.main.PointCloud;
+import vizualizator3d.main.XYZReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of the bundled point-clouds (displayXYZ), parsing of the .xyz text and reading of the binary sidecar;
+ * The files are looked up in the directory given by the system property vizualizator3d.data (the working directory by default)
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CloudParsingBenchmark {
+    @Param({"benchy.xyz", "helix.xyz", "rabbit.xyz", "sphere.xyz", "teapot.xyz", "turtle.xyz"})
+    public String file;
+
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void locateFile() throws IOException {
+        path = Path.of(System.getProperty("vizualizator3d.data", "."), file);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException(path.toAbsolutePath() + " not found, set -Dvizualizator3d.data to the directory of the .xyz files");
+        }
+        // creates the sidecar if it is missing, so that load only measures reading it
+        BinaryCloudFile.load(path);
+    }
+
+    @Benchmark
+    public PointCloud parseText() throws IOException {
+        return XYZReader.read(path);
+    }
+
+    @Benchmark
+    public PointCloud loadSidecar() throws IOException {
+        return BinaryCloudFile.load(path);
+    }
+}
@@ -0,0 +1,49 @@
+package vizualizator3d.benchmarks;
+
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.ColourPalette;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of all values of the grid to colours of the palette (getInterpolationFraction and ColourPalette.bucket)
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@State(Scope.Thread)
+public class ColourMappingBenchmark {
+    private ColourPalette palette;
+    private int[] buckets;
+
+    @Setup(Level.Trial)
+    public void createPalette(FunctionState state) {
+        palette = new ColourPalette(ColourPalette.DEFAULT_SIZE, Color.BLUE, Color.RED);
+        buckets = new int[state.grid.size()];
+        state.grid.interpolate(1);
+    }
+
+    @Benchmark
+    public int[] buckets(FunctionState state) {
+        double[] heights = state.grid.getHeights();
+        double max = state.grid.getMaxValue();
+        double difference = state.grid.getMinValue() - max;
+        for (int i = 0; i < heights.length; i++) {
+            buckets[i] = palette.bucket(ColourPalette.fraction(heights[i], max, difference));
+        }
+        return buckets;
+    }
+}
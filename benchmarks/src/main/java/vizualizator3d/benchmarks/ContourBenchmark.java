@@ -0,0 +1,55 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.ContourExtractor;
+import vizualizator3d.main.TileCache;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of contour lines of the example functions at automatic levels (updateContours);
+ * from scratch and again over the same values, when every tile of the previous extraction is reused
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class ContourBenchmark {
+    private double[] values;
+    private double[] levels;
+    private TileCache.Lattice lattice;
+    private ContourExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void prepare(FunctionState state) {
+        values = new double[state.grid.size()];
+        state.grid.evaluateRows(state.operator, 0, 0, 1, values, 0, state.grid.getRows());
+        levels = ContourExtractor.autoLevels(state.grid.getMinValue(), state.grid.getMaxValue(), 10);
+        lattice = new TileCache.Lattice(state.grid, 0, 0);
+        extractor = new ContourExtractor(ForkJoinPool.commonPool());
+        extractor.extract(state.grid, values, lattice, levels);
+    }
+
+    @Benchmark
+    public float[] full(FunctionState state) {
+        return new ContourExtractor(ForkJoinPool.commonPool()).extract(state.grid, values, lattice, levels);
+    }
+
+    @Benchmark
+    public float[] unchanged(FunctionState state) {
+        return extractor.extract(state.grid, values, lattice, levels);
+    }
+}
@@ -0,0 +1,65 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.BinaryCloudFile;
+import vizualizator3d.main.PointCloud;
+import vizualizator3d.main.VoxelDownsampler;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Voxel-grid downsampling of the bundled point-clouds, with a fixed voxel size (in per mille of the largest side
+ * of the cloud, as set by the slider) and with the search for the voxel size of a target count;
+ * The files are looked up as in CloudParsingBenchmark
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownsamplingBenchmark {
+    @Param({"benchy.xyz", "rabbit.xyz", "sphere.xyz", "turtle.xyz"})
+    public String file;
+
+    @Param({"1", "5", "20"})
+    public double voxelPerMille;
+
+    private PointCloud cloud;
+
+    @Setup(Level.Trial)
+    public void loadCloud() throws IOException {
+        Path path = Path.of(System.getProperty("vizualizator3d.data", "."), file);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException(path.toAbsolutePath() + " not found, set -Dvizualizator3d.data to the directory of the .xyz files");
+        }
+        cloud = BinaryCloudFile.load(path);
+    }
+
+    @Benchmark
+    public PointCloud voxelSize() {
+        return VoxelDownsampler.downsample(cloud, (float) (voxelPerMille / 1000 * VoxelDownsampler.getExtent(cloud)));
+    }
+
+    /**
+     * Target of a tenth of the points, independent of voxelPerMille
+     */
+    @Benchmark
+    public PointCloud targetCount() {
+        return VoxelDownsampler.downsampleToCount(cloud, cloud.getPointCount() / 10);
+    }
+}
@@ -0,0 +1,26 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import vizualizator3d.main.ExampleFunctions;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Benchmark state holding a plot grid for every example function (ExampleFunctions) and every setting of the resolution slider;
+ * The grid's targets are the values of the function
+ * @author Katarína Osvaldová
+ */
+@State(Scope.Benchmark)
+public class FunctionState extends GridState {
+    @Param({"Function1", "Function2", "Function3", "Function4", "Function5"})
+    public String function;
+
+    public DoubleBinaryOperator operator;
+
+    @Override
+    protected void prepareGrid() {
+        operator = ExampleFunctions.getAll().get(function);
+        grid.evaluate(operator, 0, 0, 1);
+    }
+}
@@ -0,0 +1,67 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.FunctionEvaluator;
+import vizualizator3d.main.FunctionGrid;
+import vizualizator3d.main.TileCache;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of the example functions over the grid (calculateNewFunctionValues);
+ * sequentially, through the FunctionEvaluator without cache and through the FunctionEvaluator with every tile cached
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class GridEvaluationBenchmark {
+    /**
+     * Evaluators sharing the common pool, one keeping nothing in its cache and one keeping everything
+     */
+    @State(Scope.Benchmark)
+    public static class Evaluators {
+        final FunctionEvaluator uncached = new FunctionEvaluator(ForkJoinPool.commonPool(), new TileCache(0), Runnable::run);
+        final FunctionEvaluator cached = new FunctionEvaluator(ForkJoinPool.commonPool(), new TileCache(Long.MAX_VALUE), Runnable::run);
+
+        @Setup(Level.Trial)
+        public void fillCache(FunctionState state) {
+            evaluate(cached, state);
+        }
+    }
+
+    static FunctionEvaluator.Result evaluate(FunctionEvaluator evaluator, FunctionState state) {
+        CompletableFuture<FunctionEvaluator.Result> result = new CompletableFuture<>();
+        evaluator.submit(state.grid, state.operator, 0, 0, 1, result::complete);
+        return result.join();
+    }
+
+    @Benchmark
+    public FunctionGrid sequential(FunctionState state) {
+        state.grid.evaluate(state.operator, 0, 0, 1);
+        return state.grid;
+    }
+
+    @Benchmark
+    public FunctionEvaluator.Result parallel(FunctionState state, Evaluators evaluators) {
+        return evaluate(evaluators.uncached, state);
+    }
+
+    @Benchmark
+    public FunctionEvaluator.Result parallelCached(FunctionState state, Evaluators evaluators) {
+        return evaluate(evaluators.cached, state);
+    }
+}
@@ -0,0 +1,41 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import vizualizator3d.main.FunctionGrid;
+
+/**
+ * Benchmark state holding a plot grid of the default interval <-10, 10> for every setting of the resolution slider
+ * @author Katarína Osvaldová
+ */
+@State(Scope.Benchmark)
+public class GridState {
+    /**
+     * Lower limit and length of the plotted interval, as in MyPlotApp
+     */
+    static final double LOWER_LIMIT = -10;
+    static final double LENGTH = 20;
+
+    @Param({"0.05", "0.06", "0.07", "0.08", "0.09", "0.10", "0.11", "0.12", "0.13", "0.14", "0.15", "0.16", "0.17",
+            "0.18", "0.19", "0.20", "0.21", "0.22", "0.23", "0.24", "0.25", "0.26", "0.27", "0.28", "0.29", "0.30",
+            "0.31", "0.32", "0.33", "0.34", "0.35", "0.36", "0.37", "0.38", "0.39", "0.40", "0.41", "0.42", "0.43",
+            "0.44", "0.45", "0.46", "0.47", "0.48", "0.49", "0.50", "0.51", "0.52", "0.53", "0.54", "0.55"})
+    public double resolution;
+
+    public FunctionGrid grid;
+
+    @Setup(Level.Trial)
+    public void createGrid() {
+        grid = new FunctionGrid(LOWER_LIMIT, LOWER_LIMIT, LENGTH, resolution);
+        prepareGrid();
+    }
+
+    /**
+     * Further preparation of the created grid by subclasses (JMH does not order setup methods of a class hierarchy)
+     */
+    protected void prepareGrid() {
+    }
+}
@@ -0,0 +1,61 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.KdTree;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking of the point under the mouse over the values of the example functions (showPickedPoint);
+ * building the k-d tree of the grid and picking by a ray from above through a random sample
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class PickingBenchmark {
+    /**
+     * Multiplier of x and y coordinates and radius of the picked points, as in MyPlotApp
+     */
+    private static final double SPREAD = 2;
+    private static final double PICK_RADIUS = .3;
+    private final Random random = new Random(42);
+    private double[] values;
+    private KdTree tree;
+
+    @Setup(Level.Trial)
+    public void prepare(FunctionState state) {
+        values = new double[state.grid.size()];
+        state.grid.evaluateRows(state.operator, 0, 0, 1, values, 0, state.grid.getRows());
+        tree = KdTree.ofGrid(state.grid, values, SPREAD, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public KdTree build(FunctionState state) {
+        return KdTree.ofGrid(state.grid, values, SPREAD, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public int pick(FunctionState state) {
+        int sample = random.nextInt(values.length);
+        int columns = state.grid.getColumns();
+        // slanted ray from high above hitting the sample
+        double x = state.grid.getX(sample % columns) * SPREAD;
+        double y = state.grid.getY(sample / columns) * SPREAD;
+        return tree.pick(x - 10, y - 10, values[sample] + 100, 10, 10, -100, PICK_RADIUS);
+    }
+}
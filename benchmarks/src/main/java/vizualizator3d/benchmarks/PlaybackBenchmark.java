@@ -0,0 +1,69 @@
+package vizualizator3d.benchmarks;
+
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.ColourPalette;
+import vizualizator3d.main.ExampleFunctions;
+import vizualizator3d.main.FunctionPlayer;
+import vizualizator3d.main.HeightfieldMesh;
+import vizualizator3d.main.TimeFunction;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames of the playback of the example time-dependent function Wave on the surface (FunctionPlayer);
+ * A frame lasts from the swap of the evaluated heights, through the recoloured update of the surface, to the next swap;
+ * The timer of the player is never started (there is no pulse without a graphics device), frames are driven by calling
+ * handle with a steady 60 Hz clock
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@State(Scope.Thread)
+public class PlaybackBenchmark {
+    private static final long FRAME_PERIOD = 16_666_667;
+    private FunctionPlayer player;
+    private HeightfieldMesh heightfield;
+    private int frames;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void createPlayer(GridState state) {
+        ColourPalette palette = new ColourPalette(ColourPalette.DEFAULT_SIZE, Color.BLUE, Color.RED);
+        heightfield = new HeightfieldMesh(state.grid, palette, 2);
+        player = new FunctionPlayer(ForkJoinPool.commonPool(), recolour -> {
+            double max = state.grid.getMaxValue();
+            double difference = state.grid.getMinValue() - max;
+            heightfield.update(recolour, value -> ColourPalette.fraction(value, max, difference));
+            frames++;
+        }) {
+            @Override
+            public void start() {
+            }
+        };
+        player.play(state.grid, (TimeFunction) ExampleFunctions.getAll().get("Wave"), 0, 0, 1);
+    }
+
+    @Benchmark
+    public HeightfieldMesh frame() {
+        int displayed = frames;
+        while (frames == displayed) {
+            now += FRAME_PERIOD;
+            player.handle(now);
+        }
+        return heightfield;
+    }
+}
@@ -0,0 +1,35 @@
+package vizualizator3d.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vizualizator3d.main.FunctionGrid;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recalculation of the targets of the grid after a change of the z axis zoom (calculateZoomValues);
+ * The zoom alternates between two factors, so the values stay bounded
+ * @author Katarína Osvaldová
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class ZoomBenchmark {
+    private double factor = 10;
+
+    @Benchmark
+    public FunctionGrid zoom(GridState state) {
+        state.grid.zoom(factor);
+        factor = 1 / factor;
+        return state.grid;
+    }
+}